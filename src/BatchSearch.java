@@ -0,0 +1,176 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Answers many shortest-path queries against the same read-only Map raster, used by Map.shortestPaths.
+ *
+ * Queries are grouped by their source cell so that a single BFS from each distinct source answers every
+ * goal of that source; the BFS stops as soon as all of its goals have been reached.
+ * Independent groups run in parallel on the common ForkJoinPool: one worker per pool thread (at most one per group)
+ * claims groups from a shared counter, so uneven groups still balance. Each worker allocates one set of scratch
+ * buffers for the batch and uses epoch stamps instead of clearing them between groups; the buffers are dropped
+ * when run returns, so at most parallelism * 16 * width * height bytes are live during a batch and none after.
+ *
+ * Design notes:
+ * - Cells are encoded as a single int (x * height + y).
+ * - Grouping sorts packed longs (source << 32 | query index), so no per-query objects are created.
+ * - The map must not be modified while a batch is running.
+ */
+final class BatchSearch {
+
+    private final int[][] map;
+    private final int width;
+    private final int height;
+    private final int obsColor;
+    private final boolean cyclic;
+
+    /**
+     * @param map the raster to search, as int[width][height] (read only)
+     * @param obsColor pixel value treated as an obstacle
+     * @param cyclic whether neighbors wrap around the borders
+     */
+    BatchSearch(int[][] map, int obsColor, boolean cyclic) {
+        this.map = map;
+        this.width = map.length;
+        this.height = map[0].length;
+        this.obsColor = obsColor;
+        this.cyclic = cyclic;
+    }
+
+    /**
+     * Run all queries. Entry i of the result is the path from sources[i] to targets[i],
+     * or null if it does not exist or the query is invalid (null, outside the map or on an obstacle).
+     */
+    Pixel2D[][] run(Pixel2D[] sources, Pixel2D[] targets, boolean parallel) {
+        int n = sources.length;
+        Pixel2D[][] ans = new Pixel2D[n][];
+        long[] keys = new long[n];
+        int valid = 0;
+        for (int i = 0; i < n; i++) {
+            int s = encode(sources[i]);
+            if (s < 0 || encode(targets[i]) < 0) continue;
+            keys[valid++] = ((long) s << 32) | i;
+        }
+        keys = Arrays.copyOf(keys, valid);
+        Arrays.sort(keys);
+        /** start index of each group of equal sources, plus a terminating entry */
+        int[] groups = new int[valid + 1];
+        int g = 0;
+        for (int i = 0; i < valid; i++) {
+            if (i == 0 || (keys[i] >>> 32) != (keys[i - 1] >>> 32)) groups[g++] = i;
+        }
+        groups[g] = valid;
+        if (g == 0) return ans;
+        final long[] k = keys;
+        final int groupCount = g;
+        int workers = parallel ? Math.max(1, Math.min(g, ForkJoinPool.getCommonPoolParallelism())) : 1;
+        AtomicInteger next = new AtomicInteger();
+        IntStream range = IntStream.range(0, workers);
+        if (workers > 1) range = range.parallel();
+        range.forEach(w -> {
+            Scratch scratch = new Scratch(width * height);
+            for (int i = next.getAndIncrement(); i < groupCount; i = next.getAndIncrement()) {
+                solveGroup(k, groups[i], groups[i + 1], targets, ans, scratch);
+            }
+        });
+        return ans;
+    }
+
+    /**
+     * One BFS from the common source of keys[from..to), writing a path into ans for every query of the group.
+     */
+    private void solveGroup(long[] keys, int from, int to, Pixel2D[] targets, Pixel2D[][] ans, Scratch s) {
+        int epoch = s.nextEpoch();
+        int src = (int) (keys[from] >>> 32);
+        int remaining = 0;
+        for (int i = from; i < to; i++) {
+            int goal = encode(targets[(int) keys[i]]);
+            if (s.goal[goal] != epoch) {
+                s.goal[goal] = epoch;
+                remaining++;
+            }
+        }
+        int head = 0, tail = 0;
+        s.queue[tail++] = src;
+        s.seen[src] = epoch;
+        s.parent[src] = -1;
+        while (head < tail && remaining > 0) {
+            int cur = s.queue[head++];
+            if (s.goal[cur] == epoch) remaining--;
+            int cx = cur / height, cy = cur % height;
+            for (int d = 0; d < 4; d++) {
+                int nx = cx, ny = cy;
+                if (d == 0) nx++;
+                else if (d == 1) nx--;
+                else if (d == 2) ny++;
+                else ny--;
+                if (cyclic) {
+                    if (nx < 0) nx = width - 1;
+                    if (nx >= width) nx = 0;
+                    if (ny < 0) ny = height - 1;
+                    if (ny >= height) ny = 0;
+                }
+                if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+                int next = nx * height + ny;
+                if (s.seen[next] == epoch) continue;
+                if (map[nx][ny] == obsColor) continue;
+                s.seen[next] = epoch;
+                s.parent[next] = cur;
+                s.queue[tail++] = next;
+            }
+        }
+        for (int i = from; i < to; i++) {
+            int q = (int) keys[i];
+            int goal = encode(targets[q]);
+            if (s.seen[goal] == epoch) ans[q] = path(s.parent, goal);
+        }
+    }
+
+    /**
+     * Encoded cell of p, or -1 if p is null, outside the map or an obstacle.
+     */
+    private int encode(Pixel2D p) {
+        if (p == null) return -1;
+        int x = p.getX(), y = p.getY();
+        if (x < 0 || x >= width || y < 0 || y >= height) return -1;
+        if (map[x][y] == obsColor) return -1;
+        return x * height + y;
+    }
+
+    private Pixel2D[] path(int[] parent, int goal) {
+        int len = 0;
+        for (int c = goal; c != -1; c = parent[c]) len++;
+        Pixel2D[] ans = new Pixel2D[len];
+        for (int c = goal, i = len - 1; c != -1; c = parent[c], i--) {
+            ans[i] = new Index2D(c / height, c % height);
+        }
+        return ans;
+    }
+
+    /** BFS buffers of one worker, reused across its groups by bumping the epoch. */
+    private static final class Scratch {
+        final int[] seen;
+        final int[] goal;
+        final int[] parent;
+        final int[] queue;
+        private int epoch;
+
+        Scratch(int n) {
+            seen = new int[n];
+            goal = new int[n];
+            parent = new int[n];
+            queue = new int[n];
+        }
+
+        int nextEpoch() {
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(seen, 0);
+                Arrays.fill(goal, 0);
+                epoch = 1;
+            }
+            return epoch;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import java.util.Arrays;
+
+/**
+ * A lazy, layer-by-layer BFS over a Map, created by Map.bfs.
+ *
+ * Each call to next() advances to the next reachable pixel in non-decreasing distance order, after which
+ * getX(), getY() and getDistance() describe that pixel. The caller may stop at any time, so "nearest X"
+ * style queries only pay for the area actually explored instead of the whole width*height map.
+ * Connectivity is 4-way, pixels equal to obsColor are obstacles, and coordinates optionally wrap (cyclic).
+ *
+ * Design notes:
+ * - Visited pixels and their distances live in a PixelIntMap, so memory is proportional to the explored
+ *   area; a full distance map is only built by toDistanceMap().
+ * - The map must not be modified while a cursor is in use.
+ *
+ * Usage example:
+ * BfsCursor c = map.bfs(new Index2D(0,0), 1, false);
+ * Pixel2D p = c.find((x, y, v) -> v == 7);
+ */
+public final class BfsCursor {
+
+    /**
+     * Predicate over a pixel used by find(): receives the coordinates and the pixel value.
+     */
+    public interface Target {
+        boolean test(int x, int y, int value);
+    }
+
+    private final int[][] map;
+    private final int width;
+    private final int height;
+    private final int obsColor;
+    private final boolean cyclic;
+    private final int maxDepth;
+
+    private int[] queue = new int[16];
+    private int head, tail;
+    private final PixelIntMap dist = new PixelIntMap();
+
+    private int curX = -1, curY = -1, curDist = -1;
+
+    /**
+     * @param map the raster to search, as int[width][height] (read only)
+     * @param start starting pixel; if null or outside the map the cursor is empty
+     * @param obsColor pixel value treated as an obstacle
+     * @param cyclic whether neighbors wrap around the borders
+     * @param maxDepth largest distance to report; pixels further away are never visited
+     */
+    BfsCursor(int[][] map, Pixel2D start, int obsColor, boolean cyclic, int maxDepth) {
+        this.map = map;
+        this.width = map.length;
+        this.height = map[0].length;
+        this.obsColor = obsColor;
+        this.cyclic = cyclic;
+        this.maxDepth = maxDepth;
+        if (start == null || maxDepth < 0) return;
+        int sx = start.getX(), sy = start.getY();
+        if (sx < 0 || sx >= width || sy < 0 || sy >= height) return;
+        dist.put(sx, sy, 0);
+        queue[tail++] = sx * height + sy;
+    }
+
+    /**
+     * Advance to the next reachable pixel.
+     * @return true if a pixel is available through getX/getY/getDistance; false when the search is exhausted
+     */
+    public boolean next() {
+        if (head == tail) return false;
+        int cur = queue[head++];
+        curX = cur / height;
+        curY = cur % height;
+        curDist = dist.get(curX, curY, -1);
+        if (curDist >= maxDepth) return true;
+        for (int k = 0; k < 4; k++) {
+            int nx = curX, ny = curY;
+            if (k == 0) nx++;
+            else if (k == 1) nx--;
+            else if (k == 2) ny++;
+            else ny--;
+            if (cyclic) {
+                if (nx < 0) nx = width - 1;
+                if (nx >= width) nx = 0;
+                if (ny < 0) ny = height - 1;
+                if (ny >= height) ny = 0;
+            }
+            if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+            if (map[nx][ny] == obsColor) continue;
+            if (dist.containsKey(nx, ny)) continue;
+            dist.put(nx, ny, curDist + 1);
+            if (tail == queue.length) queue = Arrays.copyOf(queue, tail * 2);
+            queue[tail++] = nx * height + ny;
+        }
+        return true;
+    }
+
+    /** @return x coordinate of the current pixel (valid after next() returned true) */
+    public int getX() {
+        return curX;
+    }
+
+    /** @return y coordinate of the current pixel (valid after next() returned true) */
+    public int getY() {
+        return curY;
+    }
+
+    /** @return BFS distance of the current pixel from the start (valid after next() returned true) */
+    public int getDistance() {
+        return curDist;
+    }
+
+    /**
+     * Advance until a pixel satisfying the target predicate is reached (the current pixel is not re-tested).
+     * @param target predicate over (x, y, value)
+     * @return the first matching pixel, or null if the search is exhausted without a match
+     */
+    public Pixel2D find(Target target) {
+        while (next()) {
+            if (target.test(curX, curY, map[curX][curY])) return new Index2D(curX, curY);
+        }
+        return null;
+    }
+
+    /**
+     * Run the rest of the search and materialize the distance map, in the same form as Map.allDistance:
+     * every visited pixel holds its distance and every other pixel holds -1.
+     * @return a new Map2D with the dimensions of the searched map
+     */
+    public Map2D toDistanceMap() {
+        while (next()) {
+            // drain
+        }
+        Map res = new Map(width, height, -1);
+        dist.forEach(res::setPixel);
+        return res;
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.Arrays;
+
+/**
+ * Exact squared Euclidean distance transform (Felzenszwalb-Huttenlocher), used by Map.distanceTransform
+ * and by MapFilter for disk-shaped binary morphology.
+ *
+ * The 2D transform is separable: a 1D transform along every column (y), then along every row (x) of the
+ * column result. Each 1D pass computes the lower envelope of the parabolas (q - p)^2 + f(p) in linear time,
+ * so the whole transform is O(width * height). Columns (and then rows) are independent and processed in
+ * parallel bands for large maps.
+ *
+ * With cyclic wrap every line is treated as a ring: each line is laid out three times (offsets -n, 0, +n)
+ * so that the nearest seed across the border is found, which keeps the pass linear.
+ */
+final class DistanceTransform {
+
+    /** distance of a pixel that no seed can reach (a map without seeds) */
+    static final long INF = Long.MAX_VALUE / 4;
+
+    private DistanceTransform() {
+    }
+
+    /**
+     * Squared distance from every pixel to the nearest seed, where a seed is a pixel whose value equals color
+     * (or differs from color when seedIsColor is false).
+     * @return int[width][height] of squared distances (0 on seeds, saturated at Integer.MAX_VALUE),
+     *         or -1 everywhere if there is no seed
+     */
+    static int[][] squared(int[][] px, int color, boolean seedIsColor, boolean cyclic, boolean par) {
+        int w = px.length, h = px[0].length;
+        long[][] col = new long[w][h];
+        MapFilter.bands(w, par, (from, to) -> {
+            long[] f = new long[h];
+            Line line = new Line(h, cyclic);
+            for (int x = from; x < to; x++) {
+                for (int y = 0; y < h; y++) f[y] = (px[x][y] == color) == seedIsColor ? 0 : INF;
+                line.transform(f, col[x]);
+            }
+        });
+        int[][] ans = new int[w][h];
+        MapFilter.bands(h, par, (from, to) -> {
+            long[] f = new long[w], d = new long[w];
+            Line line = new Line(w, cyclic);
+            for (int y = from; y < to; y++) {
+                for (int x = 0; x < w; x++) f[x] = col[x][y];
+                line.transform(f, d);
+                for (int x = 0; x < w; x++) ans[x][y] = d[x] >= INF ? -1 : (int) Math.min(Integer.MAX_VALUE, d[x]);
+            }
+        });
+        return ans;
+    }
+
+    /** Reusable buffers for the 1D transform of lines of a fixed length. */
+    private static final class Line {
+        private final int n;
+        private final boolean cyclic;
+        /** positions of the parabolas in the lower envelope */
+        private final int[] v;
+        /** boundaries between envelope parabolas */
+        private final double[] z;
+
+        Line(int n, boolean cyclic) {
+            this.n = n;
+            this.cyclic = cyclic;
+            int m = cyclic ? 3 * n : n;
+            this.v = new int[m];
+            this.z = new double[m + 1];
+        }
+
+        /**
+         * d[q] = min over p of (q - p)^2 + f[p], with p ranging over the ring when cyclic.
+         */
+        void transform(long[] f, long[] d) {
+            int lo = cyclic ? -n : 0, hi = cyclic ? 2 * n : n;
+            int k = -1;
+            for (int q = lo; q < hi; q++) {
+                long fq = f[Math.floorMod(q, n)];
+                if (fq >= INF) continue;
+                double s = Double.NEGATIVE_INFINITY;
+                while (k >= 0) {
+                    int p = v[k];
+                    double fp = f[Math.floorMod(p, n)];
+                    s = ((fq + (double) q * q) - (fp + (double) p * p)) / (2.0 * q - 2.0 * p);
+                    if (s > z[k]) break;
+                    k--;
+                }
+                if (k < 0) s = Double.NEGATIVE_INFINITY;
+                k++;
+                v[k] = q;
+                z[k] = s;
+                z[k + 1] = Double.POSITIVE_INFINITY;
+            }
+            if (k < 0) {
+                Arrays.fill(d, 0, n, INF);
+                return;
+            }
+            int j = 0;
+            for (int q = 0; q < n; q++) {
+                while (z[j + 1] < q) j++;
+                long dq = (long) q - v[j];
+                d[q] = dq * dq + f[Math.floorMod(v[j], n)];
+            }
+        }
+    }
+}
@@ -5,17 +5,18 @@
  * and provides basic operations that are required by the exercise codebase:
  * - construction from integer coordinates or from another Pixel2D
  * - accessors for x and y
- * - Euclidean distance computation to another Pixel2D
- * - equals and toString (note: toString currently returns null and should be implemented by the student)
+ * - Euclidean, squared and Manhattan distance computation to another Pixel2D
+ * - equals, hashCode and toString, so instances can be used as keys in hash-based sets and maps
  *
- * Instances are immutable in practice (there are no public setters).
+ * Instances are immutable value objects. For large collections of coordinates prefer the primitive
+ * helpers in Pixels, PixelSet and PixelIntMap, which avoid allocating an Index2D per pixel.
  * Typical usage: new Index2D(3,4) or new Index2D(existingPixel)
  *
  * @author Yair
  */
 public class Index2D implements Pixel2D {
-    private int x;
-    private int y;
+    private final int x;
+    private final int y;
 
     /**
      * Constructs a new Index2D with the provided coordinates.
@@ -76,21 +77,46 @@ public class Index2D implements Pixel2D {
         if(p2==null){
             return 0;
         }
-        return Math.sqrt(Math.pow(x-p2.getX(),2)+Math.pow(y-p2.getY(),2));
+        double dx = x - p2.getX();
+        double dy = y - p2.getY();
+        return Math.sqrt(dx * dx + dy * dy);
     }
 
     /**
-     * Returns a string representation of this Index2D.
+     * Computes the squared Euclidean distance between this index and another Pixel2D.
+     * This avoids the square root, so it is the cheaper choice for comparing distances.
      *
-     * Implementation note: the current implementation returns {@code null} (a placeholder).
-     * A more useful implementation would return a string such as "Index2D{x=3,y=4}".
+     * @param p2 the other Pixel2D (may be null)
+     * @return (x - other.x)^2 + (y - other.y)^2; 0 if {@code p2} is null
+     */
+    public long squaredDistance(Pixel2D p2) {
+        if (p2 == null) {
+            return 0;
+        }
+        return Pixels.squaredDistance(x, y, p2.getX(), p2.getY());
+    }
+
+    /**
+     * Computes the Manhattan (4-connected step) distance between this index and another Pixel2D.
      *
-     * @return string representation or null in the current placeholder implementation
+     * @param p2 the other Pixel2D (may be null)
+     * @return |x - other.x| + |y - other.y|; 0 if {@code p2} is null
+     */
+    public long manhattanDistance(Pixel2D p2) {
+        if (p2 == null) {
+            return 0;
+        }
+        return Pixels.manhattanDistance(x, y, p2.getX(), p2.getY());
+    }
+
+    /**
+     * Returns a string representation of this Index2D in the form "x,y" (for example "3,4").
+     *
+     * @return string representation of the coordinates
      */
     @Override
     public String toString() {
-        String ans = null;
-        return ans;
+        return x + "," + y;
     }
 
     /**
@@ -109,4 +135,14 @@ public class Index2D implements Pixel2D {
         }
         return p instanceof Index2D && x==((Index2D) p).getX() && y==((Index2D) p).getY();
     }
+
+    /**
+     * Hash code consistent with equals: equal coordinates always produce the same hash.
+     *
+     * @return a hash of the (x,y) pair
+     */
+    @Override
+    public int hashCode() {
+        return Pixels.slot(Pixels.pack(x, y), 32);
+    }
 }
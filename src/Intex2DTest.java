@@ -30,4 +30,28 @@ public class Intex2DTest {
             fail();
         }
     }
+    @Test
+    void testHashCodeConsistentWithEquals() {
+        Index2D i1= new Index2D(2,8);
+        Index2D i2= new Index2D(2,8);
+        assertEquals(i1.hashCode(),i2.hashCode());
+        java.util.Set<Index2D> set = new java.util.HashSet<>();
+        set.add(i1);
+        assertTrue(set.contains(i2));
+        assertFalse(set.contains(new Index2D(8,2)));
+    }
+    @Test
+    void testToString() {
+        assertEquals("3,4", new Index2D(3,4).toString());
+        assertEquals("-1,0", new Index2D(-1,0).toString());
+    }
+    @Test
+    void testSquaredAndManhattanDistance() {
+        Index2D i1= new Index2D(3,0);
+        Index2D i2= new Index2D(0,4);
+        assertEquals(5, i1.distance2D(i2), 0.0);
+        assertEquals(25, i1.squaredDistance(i2));
+        assertEquals(7, i1.manhattanDistance(i2));
+        assertEquals(0, i1.manhattanDistance(null));
+    }
 }
@@ -1,8 +1,6 @@
 import java.io.Serializable;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Deque;
 import java.util.List;
 
 /**
@@ -14,13 +12,23 @@ import java.util.List;
  * - pixel accessors and mutators
  * - simple arithmetic operations (add, multiply)
  * - geometric drawing helpers (circle, line, rectangle)
- * - image rescaling (nearest-neighbor)
+ * - image rescaling (nearest-neighbor, area average, max-pool or mode-pool; in place when downscaling)
  * - BFS-based algorithms: flood-fill, shortest path, and distance map (allDistance)
+ * - windowed variants of fill, shortestPath, allDistance and mul, and addMap2D at an offset
+ * - a lazy, layer-by-layer BFS cursor (bfs, nearest) for queries that only need a local region
+ * - batched shortest-path queries, grouped by source and run in parallel
+ * - local repair of a path after pixels on it became obstacles (repairPath)
+ * - an exact Euclidean distance transform (squared distance to the nearest obstacle)
+ * - weighted (Dijkstra) shortest path and distance map where pixel values are traversal costs
  *
  * Design notes:
  * - The internal representation is an int[][] array with dimensions [width][height].
  * - Public operations validate inputs and throw RuntimeException for invalid arguments (consistent with the provided tests).
- * - BFS implementations use a boolean visited matrix and an ArrayDeque as the queue.
+ * - A content hash is kept per 32x32 tile: setPixel updates it incrementally, other writes mark tiles dirty.
+ *   It backs hashCode, the equals short-circuit and diffTiles.
+ * - fill, shortestPath, allDistance, the draw methods and rescale report to MapMetrics when it is enabled.
+ * - BFS implementations encode cells as a single int (x * height + y) and use a growable int[] as the queue,
+ *   so no Index2D is allocated per visited pixel (only for the pixels of a returned path).
  *
  * Usage example (high level):
  * Map m = new Map(10, 10, 0);
@@ -29,9 +37,25 @@ import java.util.List;
  */
 public class Map implements Map2D, Serializable{
 
+    /** 4-way neighbor offsets in the order E, W, S, N */
+    private static final int[] DX = {1, -1, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1};
+
+    /** initial margin (pixels) of the window searched by repairPath, and how many times it is widened (x4) */
+    private static final int REPAIR_MARGIN = 2;
+    private static final int REPAIR_TRIES = 3;
+
+    /** log2 of the side of a hash tile */
+    private static final int TILE_BITS = 5;
+
     private int[][] map;
     private int width;
     private int height;
+    /** per-tile content hashes (sum of cellHash over the tile); null until first needed */
+    private transient long[] tileHash;
+    /** tiles whose hash must be recomputed before use */
+    private transient boolean[] tileDirty;
+    private transient int dirtyTiles;
 
     /**
      * Constructs a w*h 2D raster map with an initial value v for every pixel.
@@ -59,6 +83,19 @@ public class Map implements Map2D, Serializable{
         init(data);
     }
 
+    /**
+     * Wrap a freshly computed rectangular int[width][height] array without copying it; the caller must not
+     * keep using the array afterwards. Used by the raster engines that build their result in place.
+     */
+    static Map wrap(int[][] px) {
+        Map res = new Map(1);
+        res.width = px.length;
+        res.height = px[0].length;
+        res.map = px;
+        res.touchAll();
+        return res;
+    }
+
     /**
      * Initialize this Map to the given width and height and fill every pixel with value v.
      * This method replaces the internal buffer with a newly allocated array.
@@ -78,6 +115,7 @@ public class Map implements Map2D, Serializable{
         for (int x = 0; x < w; x++) {
             Arrays.fill(this.map[x], v);
         }
+        touchAll();
     }
 
     /**
@@ -105,6 +143,7 @@ public class Map implements Map2D, Serializable{
         for (int x = 0; x < w; x++) {
             System.arraycopy(arr[x], 0, this.map[x], 0, h);
         }
+        touchAll();
     }
 
     /**
@@ -185,8 +224,13 @@ public class Map implements Map2D, Serializable{
         if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
             throw new RuntimeException("Pixel out of bounds");
         }
+        int old = this.map[x][y];
         this.map[x][y] = v;
-
+        /** keep a valid tile hash up to date incrementally instead of invalidating it */
+        if (this.tileHash != null && old != v) {
+            int t = tileOf(x, y);
+            if (!this.tileDirty[t]) this.tileHash[t] += cellHash(x, y, v) - cellHash(x, y, old);
+        }
     }
 
     /**
@@ -238,6 +282,7 @@ public class Map implements Map2D, Serializable{
                 this.map[x][y] += p.getPixel(x, y);
             }
         }
+        touchAll();
     }
 
     /**
@@ -252,6 +297,7 @@ public class Map implements Map2D, Serializable{
                 this.map[x][y] = (int) Math.round(this.map[x][y] * scalar);
             }
         }
+        touchAll();
 
     }
 
@@ -264,21 +310,31 @@ public class Map implements Map2D, Serializable{
      */
     @Override
     public void rescale(double sx, double sy) {
+        rescale(sx, sy, MapRescale.Mode.NEAREST);
+    }
+
+    /**
+     * Rescale the map with the given resampling mode. New dimensions are computed as in rescale(sx, sy);
+     * destination pixel (x, y) reduces the source block starting at (floor(x / sx), floor(y / sy)),
+     * see MapRescale. Downscales reuse the current buffer and large maps are resampled in parallel.
+     * @param sx scale factor in X (width) dimension; must be > 0
+     * @param sy scale factor in Y (height) dimension; must be > 0
+     * @param mode how a block of source pixels is reduced (NEAREST, AREA, MAX or MODE)
+     * @throws RuntimeException if either scale factor is not positive or mode is null
+     */
+    public void rescale(double sx, double sy, MapRescale.Mode mode) {
         if (sx <= 0 || sy <= 0) throw new RuntimeException("Scale must be positive");
+        if (mode == null) throw new RuntimeException("Mode is null");
+        long t0 = MapMetrics.start();
         int newW = Math.max(1, (int) Math.round(this.width * sx));
         int newH = Math.max(1, (int) Math.round(this.height * sy));
-        int[][] dst = new int[newW][newH];
-        for (int x = 0; x < newW; x++) {
-            for (int y = 0; y < newH; y++) {
-                /** nearest neighbor sampling */
-                int srcX = Math.min(this.width - 1, Math.max(0, (int) Math.floor(x / sx)));
-                int srcY = Math.min(this.height - 1, Math.max(0, (int) Math.floor(y / sy)));
-                dst[x][y] = this.map[srcX][srcY];
-            }
-        }
+        boolean par = (long) newW * newH >= MapFilter.PARALLEL_THRESHOLD;
+        boolean reused = sx <= 1 && sy <= 1 && newH == this.height;
+        this.map = MapRescale.rescale(this.map, newW, newH, sx, sy, mode, par);
         this.width = newW;
         this.height = newH;
-        this.map = dst;
+        touchAll();
+        if (t0 != 0) MapMetrics.record(MapMetrics.Op.RESCALE, t0, (long) newW * newH, 0, reused ? 0 : 4L * newW * newH);
     }
 
     /**
@@ -293,14 +349,17 @@ public class Map implements Map2D, Serializable{
     @Override
     public void drawCircle(Pixel2D center, double rad, int color) {
         if (center == null) throw new RuntimeException("Center null");
+        long t0 = MapMetrics.start();
+        int cx = center.getX(), cy = center.getY();
         for (int x = 0; x < this.width; x++) {
             for (int y = 0; y < this.height; y++) {
-                Index2D p = new Index2D(x, y);
-                if (center.distance2D(p) <= rad) {
+                if (Math.sqrt(Pixels.squaredDistance(cx, cy, x, y)) <= rad) {
                     this.map[x][y] = color;
                 }
             }
         }
+        touchAll();
+        if (t0 != 0) MapMetrics.record(MapMetrics.Op.DRAW_CIRCLE, t0, (long) this.width * this.height, 0, 0);
     }
 
     /**
@@ -322,6 +381,7 @@ public class Map implements Map2D, Serializable{
             if (isInside(p1)) setPixel(p1, color);
             return;
         }
+        long t0 = MapMetrics.start();
         int dx = Math.abs(x2 - x1);
         int dy = Math.abs(y2 - y1);
         if (dx >= dy) {
@@ -331,7 +391,10 @@ public class Map implements Map2D, Serializable{
                 double t = (x2 == x1) ? 0 : (double) (xi - x1) / (double) (x2 - x1);
                 double yf = y1 + t * (y2 - y1);
                 int yi = (int) Math.round(yf);
-                if (xi >= 0 && xi < this.width && yi >= 0 && yi < this.height) this.map[xi][yi] = color;
+                if (xi >= 0 && xi < this.width && yi >= 0 && yi < this.height) {
+                    this.map[xi][yi] = color;
+                    touch(xi, yi);
+                }
             }
         } else {
             int sy = y1 < y2 ? 1 : -1;
@@ -339,9 +402,13 @@ public class Map implements Map2D, Serializable{
                 double t = (y2 == y1) ? 0 : (double) (yi - y1) / (double) (y2 - y1);
                 double xf = x1 + t * (x2 - x1);
                 int xi = (int) Math.round(xf);
-                if (xi >= 0 && xi < this.width && yi >= 0 && yi < this.height) this.map[xi][yi] = color;
+                if (xi >= 0 && xi < this.width && yi >= 0 && yi < this.height) {
+                    this.map[xi][yi] = color;
+                    touch(xi, yi);
+                }
             }
         }
+        if (t0 != 0) MapMetrics.record(MapMetrics.Op.DRAW_LINE, t0, Math.max(dx, dy) + 1L, 0, 0);
     }
 
     /**
@@ -359,25 +426,39 @@ public class Map implements Map2D, Serializable{
         int x2 = Math.max(p1.getX(), p2.getX());
         int y1 = Math.min(p1.getY(), p2.getY());
         int y2 = Math.max(p1.getY(), p2.getY());
+        long t0 = MapMetrics.start();
         for (int x = x1; x <= x2; x++) {
             for (int y = y1; y <= y2; y++) {
                 if (x >= 0 && x < this.width && y >= 0 && y < this.height) this.map[x][y] = color;
             }
         }
+        touchRect(x1, y1, x2, y2);
+        if (t0 != 0) MapMetrics.record(MapMetrics.Op.DRAW_RECT, t0, (x2 - x1 + 1L) * (y2 - y1 + 1L), 0, 0);
     }
 
     /**
      * Compare this Map with another object for pixel-wise equality. The other object must implement Map2D
      * and have the same dimensions. Equality is defined by identical integer values at every coordinate.
+     * When ob is also a Map, the content hashes are compared first (if both are up to date) and the
+     * pixels are then compared column by column with Arrays.equals.
      * @param ob any object (typically another Map2D)
      * @return true if ob is a Map2D with same dimensions and identical pixels; false otherwise
      */
     @Override
     public boolean equals(Object ob) {
         if (ob == null) return false;
+        if (ob == this) return true;
         if (!(ob instanceof Map2D)) return false;
         Map2D other = (Map2D) ob;
         if (!sameDimensions(other)) return false;
+        if (ob instanceof Map) {
+            Map o = (Map) ob;
+            if (hashReady() && o.hashReady() && contentHash() != o.contentHash()) return false;
+            for (int x = 0; x < this.width; x++) {
+                if (!Arrays.equals(this.map[x], o.map[x])) return false;
+            }
+            return true;
+        }
         for (int x = 0; x < this.width; x++) {
             for (int y = 0; y < this.height; y++) {
                 if (this.map[x][y] != other.getPixel(x, y)) return false;
@@ -386,6 +467,180 @@ public class Map implements Map2D, Serializable{
         return true;
     }
 
+    /**
+     * Hash code consistent with equals, also across Map2D types: it is derived from the dimensions and the
+     * content hash, which SparseMap computes the same way.
+     * @return a hash of the dimensions and pixel values
+     */
+    @Override
+    public int hashCode() {
+        long h = contentHash();
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * A 64-bit digest of the dimensions and every pixel value. The digest is the sum of per-tile hashes
+     * (tiles of 32x32 pixels); setPixel updates the affected tile hash in place and the other write
+     * operations mark the tiles they touch, so only changed tiles are rehashed on the next call.
+     * SparseMap.contentHash returns the same digest for the same dimensions and pixels.
+     * @return the content digest of this map
+     */
+    public long contentHash() {
+        updateTileHashes();
+        long h = 31L * this.width + this.height;
+        for (long t : this.tileHash) h += t;
+        return h;
+    }
+
+    /**
+     * Report the 32x32 tiles in which this map differs from another map of the same dimensions.
+     * Tiles whose hashes differ are reported directly; tiles with equal hashes are verified column by column.
+     * @param other a Map with the same dimensions
+     * @return a list of {min corner, max corner} pairs (inclusive, as for drawRect), one per differing tile
+     * @throws RuntimeException if other is null or has different dimensions
+     */
+    public List<Pixel2D[]> diffTiles(Map other) {
+        if (!sameDimensions(other)) throw new RuntimeException("Maps differ in dimensions");
+        updateTileHashes();
+        other.updateTileHashes();
+        List<Pixel2D[]> ans = new ArrayList<>();
+        int tilesH = tilesHigh();
+        for (int t = 0; t < this.tileHash.length; t++) {
+            int x0 = (t / tilesH) << TILE_BITS, y0 = (t % tilesH) << TILE_BITS;
+            int x1 = Math.min(this.width, x0 + (1 << TILE_BITS)), y1 = Math.min(this.height, y0 + (1 << TILE_BITS));
+            boolean differs = this.tileHash[t] != other.tileHash[t];
+            for (int x = x0; x < x1 && !differs; x++) {
+                differs = Arrays.mismatch(this.map[x], y0, y1, other.map[x], y0, y1) >= 0;
+            }
+            if (differs) ans.add(new Pixel2D[]{new Index2D(x0, y0), new Index2D(x1 - 1, y1 - 1)});
+        }
+        return ans;
+    }
+
+    /** true if the tile hashes are allocated and none is dirty, i.e. contentHash() is O(tiles) */
+    private boolean hashReady() {
+        return this.tileHash != null && this.dirtyTiles == 0;
+    }
+
+    /** recompute the hash of every dirty tile (all of them after touchAll) */
+    private void updateTileHashes() {
+        if (this.tileHash == null) {
+            int n = tilesHigh() * ((this.width + (1 << TILE_BITS) - 1) >> TILE_BITS);
+            this.tileHash = new long[n];
+            this.tileDirty = new boolean[n];
+            Arrays.fill(this.tileDirty, true);
+            this.dirtyTiles = n;
+        }
+        if (this.dirtyTiles == 0) return;
+        int tilesH = tilesHigh();
+        for (int t = 0; t < this.tileHash.length; t++) {
+            if (!this.tileDirty[t]) continue;
+            int x0 = (t / tilesH) << TILE_BITS, y0 = (t % tilesH) << TILE_BITS;
+            int x1 = Math.min(this.width, x0 + (1 << TILE_BITS)), y1 = Math.min(this.height, y0 + (1 << TILE_BITS));
+            long h = 0;
+            for (int x = x0; x < x1; x++) h += columnHash(x, y0, this.map[x], y0, y1 - y0);
+            this.tileHash[t] = h;
+            this.tileDirty[t] = false;
+        }
+        this.dirtyTiles = 0;
+    }
+
+    /** mark the tile of (x,y) as changed */
+    private void touch(int x, int y) {
+        if (this.tileDirty == null) return;
+        int t = tileOf(x, y);
+        if (!this.tileDirty[t]) {
+            this.tileDirty[t] = true;
+            this.dirtyTiles++;
+        }
+    }
+
+    /** mark every tile overlapping the rectangle [x1,x2] x [y1,y2] (clipped to the map) as changed */
+    private void touchRect(int x1, int y1, int x2, int y2) {
+        if (this.tileDirty == null) return;
+        x1 = Math.max(0, x1);
+        y1 = Math.max(0, y1);
+        x2 = Math.min(this.width - 1, x2);
+        y2 = Math.min(this.height - 1, y2);
+        for (int x = x1 >> TILE_BITS; x <= x2 >> TILE_BITS; x++) {
+            for (int y = y1 >> TILE_BITS; y <= y2 >> TILE_BITS; y++) touch(x << TILE_BITS, y << TILE_BITS);
+        }
+    }
+
+    /** drop all tile hashes (used when the whole map or its dimensions change) */
+    private void touchAll() {
+        this.tileHash = null;
+        this.tileDirty = null;
+        this.dirtyTiles = 0;
+    }
+
+    private int tilesHigh() {
+        return (this.height + (1 << TILE_BITS) - 1) >> TILE_BITS;
+    }
+
+    private int tileOf(int x, int y) {
+        return (x >> TILE_BITS) * tilesHigh() + (y >> TILE_BITS);
+    }
+
+    /** odd multipliers of the position weights of cellHash */
+    private static final long HASH_A = 0x9E3779B97F4A7C15L, HASH_B = 0xC2B2AE3D27D4EB4FL;
+
+    /**
+     * Position-dependent 64-bit hash of one pixel: a murmur3 finalizer of the value times the position weight
+     * HASH_A^x * HASH_B^y (wrapping arithmetic). The weights are what makes blockHash computable in closed form,
+     * so other Map2D implementations (SparseMap) produce the same digest without visiting uniform areas.
+     */
+    static long cellHash(int x, int y, int v) {
+        return mix(v) * power(HASH_A, x) * power(HASH_B, y);
+    }
+
+    /** sum of cellHash over the n pixels (x, y), ..., (x, y + n - 1) holding values[from], ..., values[from + n - 1] */
+    static long columnHash(int x, int y, int[] values, int from, int n) {
+        long w = power(HASH_A, x) * power(HASH_B, y), h = 0;
+        for (int i = from; i < from + n; i++) {
+            h += mix(values[i]) * w;
+            w *= HASH_B;
+        }
+        return h;
+    }
+
+    /** sum of cellHash over the rectangle [x0, x1) x [y0, y1) when every pixel holds v, in O(log) time */
+    static long blockHash(int x0, int y0, int x1, int y1, int v) {
+        return mix(v) * power(HASH_A, x0) * geometricSum(HASH_A, x1 - x0) * power(HASH_B, y0) * geometricSum(HASH_B, y1 - y0);
+    }
+
+    private static long mix(int v) {
+        long h = v + 0x632BE59BD9B4E019L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long power(long a, int n) {
+        long r = 1;
+        for (; n > 0; n >>>= 1, a *= a) {
+            if ((n & 1) != 0) r *= a;
+        }
+        return r;
+    }
+
+    /** a^0 + a^1 + ... + a^(n-1), by doubling (no division, so it also works modulo 2^64) */
+    private static long geometricSum(long a, int n) {
+        long sum = 0, pow = 1;
+        for (int bit = 31 - Integer.numberOfLeadingZeros(n); bit >= 0; bit--) {
+            sum += sum * pow;
+            pow *= pow;
+            if ((n >>> bit & 1) != 0) {
+                sum += pow;
+                pow *= a;
+            }
+        }
+        return sum;
+    }
+
     /**
      * Fill (flood-fill) algorithm starting from pixel xy and replacing all connected pixels
      * that have the same value as the starting pixel with new_v. The connectivity is 4-way (N,E,S,W).
@@ -405,23 +660,21 @@ public class Map implements Map2D, Serializable{
         int sy = xy.getY();
         int orig = getPixel(sx, sy);
         if (orig == new_v) return 0;
-        boolean[][] vis = new boolean[this.width][this.height];
-        Deque<Index2D> q = new ArrayDeque<>();
-        q.add(new Index2D(sx, sy));
-        vis[sx][sy] = true;
-        int filled = 0;
-        while (!q.isEmpty()) {
-            Index2D cur = q.removeFirst();
-            int cx = cur.getX(), cy = cur.getY();
-            if (getPixel(cx, cy) == orig) {
-                setPixel(cx, cy, new_v);
-                filled++;
-            }
+        long t0 = MapMetrics.start();
+        /** pixels are painted when queued, so the map itself serves as the visited set */
+        int[] q = new int[16];
+        int head = 0, tail = 0, peak = 0;
+        q[tail++] = sx * this.height + sy;
+        this.map[sx][sy] = new_v;
+        touch(sx, sy);
+        while (head < tail) {
+            if (tail - head > peak) peak = tail - head;
+            int cur = q[head++];
+            int cx = cur / this.height, cy = cur % this.height;
             /** neighbors 4-way */
-            int[][] nbrs = {{1,0},{-1,0},{0,1},{0,-1}};
-            for (int[] d : nbrs) {
-                int nx = cx + d[0];
-                int ny = cy + d[1];
+            for (int d = 0; d < 4; d++) {
+                int nx = cx + DX[d];
+                int ny = cy + DY[d];
                 if (cyclic) {
                     if (nx < 0) nx = this.width - 1;
                     if (nx >= this.width) nx = 0;
@@ -429,13 +682,15 @@ public class Map implements Map2D, Serializable{
                     if (ny >= this.height) ny = 0;
                 }
                 if (nx < 0 || nx >= this.width || ny < 0 || ny >= this.height) continue;
-                if (vis[nx][ny]) continue;
-                if (getPixel(nx, ny) != orig) continue;
-                vis[nx][ny] = true;
-                q.addLast(new Index2D(nx, ny));
+                if (this.map[nx][ny] != orig) continue;
+                this.map[nx][ny] = new_v;
+                touch(nx, ny);
+                if (tail == q.length) q = Arrays.copyOf(q, tail * 2);
+                q[tail++] = nx * this.height + ny;
             }
         }
-        return filled;
+        if (t0 != 0) MapMetrics.record(MapMetrics.Op.FILL, t0, tail, peak, 4L * q.length);
+        return tail;
     }
 
     /**
@@ -457,21 +712,25 @@ public class Map implements Map2D, Serializable{
         if (p1 == null || p2 == null) return null;
         if (!isInside(p1) || !isInside(p2)) return null;
         if (getPixel(p1) == obsColor || getPixel(p2) == obsColor) return null;
-        boolean[][] vis = new boolean[this.width][this.height];
-        Index2D[][] parent = new Index2D[this.width][this.height];
-        Deque<Index2D> q = new ArrayDeque<>();
-        Index2D start = new Index2D(p1);
-        Index2D goal = new Index2D(p2);
-        q.add(start);
-        vis[start.getX()][start.getY()] = true;
+        long t0 = MapMetrics.start();
+        /** parent[c] is the encoded previous cell, or -1 while c is unvisited */
+        int[] parent = new int[this.width * this.height];
+        Arrays.fill(parent, -1);
+        int[] q = new int[16];
+        int head = 0, tail = 0, peak = 0;
+        int start = p1.getX() * this.height + p1.getY();
+        int goal = p2.getX() * this.height + p2.getY();
+        q[tail++] = start;
+        parent[start] = start;
         boolean found = false;
-        int[][] nbrs = {{1,0},{-1,0},{0,1},{0,-1}};
-        while (!q.isEmpty()) {
-            Index2D cur = q.removeFirst();
-            if (cur.equals(goal)) { found = true; break; }
-            for (int[] d : nbrs) {
-                int nx = cur.getX() + d[0];
-                int ny = cur.getY() + d[1];
+        while (head < tail) {
+            if (tail - head > peak) peak = tail - head;
+            int cur = q[head++];
+            if (cur == goal) { found = true; break; }
+            int cx = cur / this.height, cy = cur % this.height;
+            for (int d = 0; d < 4; d++) {
+                int nx = cx + DX[d];
+                int ny = cy + DY[d];
                 if (cyclic) {
                     if (nx < 0) nx = this.width - 1;
                     if (nx >= this.width) nx = 0;
@@ -479,26 +738,23 @@ public class Map implements Map2D, Serializable{
                     if (ny >= this.height) ny = 0;
                 }
                 if (nx < 0 || nx >= this.width || ny < 0 || ny >= this.height) continue;
-                if (vis[nx][ny]) continue;
-                if (getPixel(nx, ny) == obsColor) continue;
-                vis[nx][ny] = true;
-                parent[nx][ny] = cur;
-                Index2D next = new Index2D(nx, ny);
-                q.addLast(next);
+                int next = nx * this.height + ny;
+                if (parent[next] != -1) continue;
+                if (this.map[nx][ny] == obsColor) continue;
+                parent[next] = cur;
+                if (tail == q.length) q = Arrays.copyOf(q, tail * 2);
+                q[tail++] = next;
             }
         }
+        if (t0 != 0) MapMetrics.record(MapMetrics.Op.SHORTEST_PATH, t0, head, peak, 4L * (parent.length + q.length));
         if (!found) return null;
         /** reconstruct path */
-        List<Pixel2D> path = new ArrayList<>();
-        Index2D cur = new Index2D(p2);
-        while (cur != null && !cur.equals(start)) {
-            path.add(cur);
-            cur = parent[cur.getX()][cur.getY()];
-        }
-        path.add(start);
-        // reverse
-        Pixel2D[] ans = new Pixel2D[path.size()];
-        for (int i = 0; i < path.size(); i++) ans[i] = path.get(path.size() - 1 - i);
+        int len = 1;
+        for (int c = goal; c != start; c = parent[c]) len++;
+        Pixel2D[] ans = new Pixel2D[len];
+        for (int c = goal, i = len - 1; i >= 0; c = parent[c], i--) {
+            ans[i] = new Index2D(c / this.height, c % this.height);
+        }
         return ans;
     }
 
@@ -518,18 +774,21 @@ public class Map implements Map2D, Serializable{
     public Map2D allDistance(Pixel2D start, int obsColor, boolean cyclic) {
         Map res = new Map(this.width, this.height, -1);
         if (start == null || !isInside(start)) return res;
-        boolean[][] vis = new boolean[this.width][this.height];
-        Deque<Index2D> q = new ArrayDeque<>();
-        q.add(new Index2D(start));
-        vis[start.getX()][start.getY()] = true;
-        res.setPixel(start, 0);
-        int[][] nbrs = {{1,0},{-1,0},{0,1},{0,-1}};
-        while (!q.isEmpty()) {
-            Index2D cur = q.removeFirst();
-            int curd = res.getPixel(cur);
-            for (int[] d : nbrs) {
-                int nx = cur.getX() + d[0];
-                int ny = cur.getY() + d[1];
+        long t0 = MapMetrics.start();
+        /** the result doubles as the visited set: -1 means not reached yet */
+        int[][] dist = res.map;
+        int[] q = new int[16];
+        int head = 0, tail = 0, peak = 0;
+        q[tail++] = start.getX() * this.height + start.getY();
+        dist[start.getX()][start.getY()] = 0;
+        while (head < tail) {
+            if (tail - head > peak) peak = tail - head;
+            int cur = q[head++];
+            int cx = cur / this.height, cy = cur % this.height;
+            int curd = dist[cx][cy];
+            for (int d = 0; d < 4; d++) {
+                int nx = cx + DX[d];
+                int ny = cy + DY[d];
                 if (cyclic) {
                     if (nx < 0) nx = this.width - 1;
                     if (nx >= this.width) nx = 0;
@@ -537,13 +796,490 @@ public class Map implements Map2D, Serializable{
                     if (ny >= this.height) ny = 0;
                 }
                 if (nx < 0 || nx >= this.width || ny < 0 || ny >= this.height) continue;
-                if (vis[nx][ny]) continue;
-                if (getPixel(nx, ny) == obsColor) continue;
-                vis[nx][ny] = true;
-                res.setPixel(nx, ny, curd + 1);
-                q.addLast(new Index2D(nx, ny));
+                if (dist[nx][ny] != -1) continue;
+                if (this.map[nx][ny] == obsColor) continue;
+                dist[nx][ny] = curd + 1;
+                if (tail == q.length) q = Arrays.copyOf(q, tail * 2);
+                q[tail++] = nx * this.height + ny;
+            }
+        }
+        if (t0 != 0) {
+            MapMetrics.record(MapMetrics.Op.ALL_DISTANCE, t0, tail, peak, 4L * ((long) this.width * this.height + q.length));
+        }
+        return res;
+    }
+
+    /**
+     * Windowed flood fill: like fill (non-cyclic), but the search never leaves the rectangle between
+     * the corners c1 and c2 (inclusive, clipped to the map). Scratch space is proportional to the window.
+     *
+     * @param xy starting Pixel2D; if null or outside the window nothing is changed and 0 is returned
+     * @param new_v new integer value to paint the connected region
+     * @param c1 one corner of the window
+     * @param c2 the opposite corner of the window
+     * @return the number of pixels that were changed
+     * @throws RuntimeException if either corner is null
+     */
+    public int fill(Pixel2D xy, int new_v, Pixel2D c1, Pixel2D c2) {
+        int[] win = window(c1, c2);
+        if (win == null || !inWindow(xy, win)) return 0;
+        int x0 = win[0], y0 = win[1], x1 = win[2], y1 = win[3], wh = y1 - y0 + 1;
+        int sx = xy.getX(), sy = xy.getY();
+        int orig = this.map[sx][sy];
+        if (orig == new_v) return 0;
+        long t0 = MapMetrics.start();
+        int[] q = new int[16];
+        int head = 0, tail = 0, peak = 0;
+        q[tail++] = (sx - x0) * wh + (sy - y0);
+        this.map[sx][sy] = new_v;
+        touch(sx, sy);
+        while (head < tail) {
+            if (tail - head > peak) peak = tail - head;
+            int cur = q[head++];
+            int cx = x0 + cur / wh, cy = y0 + cur % wh;
+            for (int d = 0; d < 4; d++) {
+                int nx = cx + DX[d];
+                int ny = cy + DY[d];
+                if (nx < x0 || nx > x1 || ny < y0 || ny > y1) continue;
+                if (this.map[nx][ny] != orig) continue;
+                this.map[nx][ny] = new_v;
+                touch(nx, ny);
+                if (tail == q.length) q = Arrays.copyOf(q, tail * 2);
+                q[tail++] = (nx - x0) * wh + (ny - y0);
+            }
+        }
+        if (t0 != 0) MapMetrics.record(MapMetrics.Op.FILL, t0, tail, peak, 4L * q.length);
+        return tail;
+    }
+
+    /**
+     * Windowed shortest path: like shortestPath (non-cyclic), but the path may only use pixels inside the
+     * rectangle between the corners c1 and c2 (inclusive, clipped to the map).
+     * Scratch space is proportional to the window, not to the map.
+     *
+     * @param p1 starting coordinate (must be inside the window)
+     * @param p2 target coordinate (must be inside the window)
+     * @param obsColor color value considered as obstacle
+     * @param c1 one corner of the window
+     * @param c2 the opposite corner of the window
+     * @return Pixel2D[] (map coordinates) ordered from start to goal if a path exists; null otherwise
+     * @throws RuntimeException if either corner is null
+     */
+    public Pixel2D[] shortestPath(Pixel2D p1, Pixel2D p2, int obsColor, Pixel2D c1, Pixel2D c2) {
+        int[] win = window(c1, c2);
+        if (win == null || !inWindow(p1, win) || !inWindow(p2, win)) return null;
+        if (getPixel(p1) == obsColor || getPixel(p2) == obsColor) return null;
+        int x0 = win[0], y0 = win[1], x1 = win[2], y1 = win[3], wh = y1 - y0 + 1;
+        long t0 = MapMetrics.start();
+        int[] parent = new int[(x1 - x0 + 1) * wh];
+        Arrays.fill(parent, -1);
+        int[] q = new int[16];
+        int head = 0, tail = 0, peak = 0;
+        int start = (p1.getX() - x0) * wh + (p1.getY() - y0);
+        int goal = (p2.getX() - x0) * wh + (p2.getY() - y0);
+        q[tail++] = start;
+        parent[start] = start;
+        boolean found = false;
+        while (head < tail) {
+            if (tail - head > peak) peak = tail - head;
+            int cur = q[head++];
+            if (cur == goal) { found = true; break; }
+            int cx = x0 + cur / wh, cy = y0 + cur % wh;
+            for (int d = 0; d < 4; d++) {
+                int nx = cx + DX[d];
+                int ny = cy + DY[d];
+                if (nx < x0 || nx > x1 || ny < y0 || ny > y1) continue;
+                int next = (nx - x0) * wh + (ny - y0);
+                if (parent[next] != -1) continue;
+                if (this.map[nx][ny] == obsColor) continue;
+                parent[next] = cur;
+                if (tail == q.length) q = Arrays.copyOf(q, tail * 2);
+                q[tail++] = next;
+            }
+        }
+        if (t0 != 0) MapMetrics.record(MapMetrics.Op.SHORTEST_PATH, t0, head, peak, 4L * (parent.length + q.length));
+        if (!found) return null;
+        int len = 1;
+        for (int c = goal; c != start; c = parent[c]) len++;
+        Pixel2D[] ans = new Pixel2D[len];
+        for (int c = goal, i = len - 1; i >= 0; c = parent[c], i--) {
+            ans[i] = new Index2D(x0 + c / wh, y0 + c % wh);
+        }
+        return ans;
+    }
+
+    /**
+     * Repair a path after some pixels were repainted, instead of searching again from scratch.
+     * Every run of path pixels that became obstacles is replaced by a detour between the free path pixels
+     * around it, searched in a small window around that stretch of the path (windowed shortestPath) whose
+     * margin grows a few times before giving up. Loops created by splicing are cut out.
+     * Only when a local repair fails (or the stretch wraps around a cyclic border) is the whole path
+     * searched again with shortestPath. The repaired path is valid but, unlike a full search, not
+     * necessarily shortest; pixels that were freed are not used to shorten it.
+     *
+     * @param path a path from shortestPath (or the part of it still to follow), ordered from start to goal
+     * @param changed the pixels repainted since the path was computed, or null to check every path pixel
+     * @param obsColor color value considered as obstacle
+     * @param cyclic whether the full-search fallback may wrap around the borders
+     * @return the path itself if no pixel of it became an obstacle, else the repaired path;
+     *         null if the start or goal became an obstacle or no path exists anymore
+     * @throws RuntimeException if path is null or empty
+     */
+    public Pixel2D[] repairPath(Pixel2D[] path, Pixel2D[] changed, int obsColor, boolean cyclic) {
+        if (path == null || path.length == 0) throw new RuntimeException("Path is empty");
+        Pixel2D first = path[0], last = path[path.length - 1];
+        if (!isInside(first) || !isInside(last)) return null;
+        boolean[] blocked = new boolean[path.length];
+        boolean any = false;
+        if (changed == null) {
+            for (int i = 0; i < path.length; i++) {
+                if (isInside(path[i]) && getPixel(path[i]) == obsColor) blocked[i] = any = true;
+            }
+        } else {
+            PixelSet hit = new PixelSet(changed.length);
+            for (Pixel2D c : changed) {
+                if (isInside(c) && getPixel(c) == obsColor) hit.add(c);
+            }
+            if (!hit.isEmpty()) {
+                for (int i = 0; i < path.length; i++) {
+                    if (hit.contains(path[i])) blocked[i] = any = true;
+                }
+            }
+        }
+        if (!any) return path;
+        if (blocked[0] || blocked[path.length - 1]) return null;
+        List<Pixel2D> cells = new ArrayList<>(path.length);
+        int i = 0;
+        while (i < path.length) {
+            if (!blocked[i]) {
+                cells.add(path[i++]);
+                continue;
+            }
+            int a = i - 1, b = i;
+            while (blocked[b]) b++;
+            Pixel2D[] detour = detour(path, a, b, obsColor);
+            if (detour == null) return shortestPath(first, last, obsColor, cyclic);
+            /** detour[0] is path[a], already added */
+            for (int k = 1; k < detour.length; k++) cells.add(detour[k]);
+            i = b + 1;
+        }
+        return withoutLoops(cells);
+    }
+
+    /**
+     * Search a detour from path[a] to path[b] in windows of growing margin around path[a..b].
+     * @return the detour (both anchors included), or null if none was found locally
+     */
+    private Pixel2D[] detour(Pixel2D[] path, int a, int b, int obsColor) {
+        int minX = path[a].getX(), maxX = minX, minY = path[a].getY(), maxY = minY;
+        for (int k = a + 1; k <= b; k++) {
+            int x = path[k].getX(), y = path[k].getY();
+            /** a stretch that jumps (wraps around a cyclic border) has no meaningful bounding window */
+            if (Math.abs(x - path[k - 1].getX()) + Math.abs(y - path[k - 1].getY()) != 1) return null;
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+        for (int margin = REPAIR_MARGIN, tries = 0; tries < REPAIR_TRIES; margin *= 4, tries++) {
+            Pixel2D c1 = new Index2D(minX - margin, minY - margin), c2 = new Index2D(maxX + margin, maxY + margin);
+            Pixel2D[] ans = shortestPath(path[a], path[b], obsColor, c1, c2);
+            if (ans != null) return ans;
+            int[] win = window(c1, c2);
+            if (win[0] == 0 && win[1] == 0 && win[2] == this.width - 1 && win[3] == this.height - 1) return null;
+        }
+        return null;
+    }
+
+    /** Cut the loops out of a pixel sequence: whenever a pixel repeats, everything since its first visit is dropped. */
+    private static Pixel2D[] withoutLoops(List<Pixel2D> cells) {
+        PixelIntMap at = new PixelIntMap(cells.size());
+        List<Pixel2D> ans = new ArrayList<>(cells.size());
+        for (Pixel2D p : cells) {
+            int seen = at.get(p.getX(), p.getY(), -1);
+            if (seen >= 0) {
+                for (int k = ans.size() - 1; k > seen; k--) {
+                    Pixel2D r = ans.remove(k);
+                    at.remove(r.getX(), r.getY());
+                }
+                continue;
+            }
+            at.put(p.getX(), p.getY(), ans.size());
+            ans.add(p);
+        }
+        return ans.toArray(new Pixel2D[0]);
+    }
+
+    /**
+     * Windowed distance map: like allDistance (non-cyclic), restricted to the rectangle between the corners
+     * c1 and c2 (inclusive, clipped to the map). The result has the size of the clipped window, and its pixel
+     * (0,0) corresponds to the window's minimal corner.
+     *
+     * @param start the starting Pixel2D (if null or outside the window, the result is filled with -1)
+     * @param obsColor integer color representing obstacles
+     * @param c1 one corner of the window
+     * @param c2 the opposite corner of the window
+     * @return a window-sized Map2D of BFS distances (-1 for unreachable or obstacle pixels)
+     * @throws RuntimeException if either corner is null or the window does not intersect the map
+     */
+    public Map2D allDistance(Pixel2D start, int obsColor, Pixel2D c1, Pixel2D c2) {
+        int[] win = window(c1, c2);
+        if (win == null) throw new RuntimeException("Window outside the map");
+        int x0 = win[0], y0 = win[1], x1 = win[2], y1 = win[3], wh = y1 - y0 + 1;
+        Map res = new Map(x1 - x0 + 1, wh, -1);
+        if (!inWindow(start, win)) return res;
+        long t0 = MapMetrics.start();
+        int[][] dist = res.map;
+        int[] q = new int[16];
+        int head = 0, tail = 0, peak = 0;
+        q[tail++] = (start.getX() - x0) * wh + (start.getY() - y0);
+        dist[start.getX() - x0][start.getY() - y0] = 0;
+        while (head < tail) {
+            if (tail - head > peak) peak = tail - head;
+            int cur = q[head++];
+            int lx = cur / wh, ly = cur % wh;
+            int curd = dist[lx][ly];
+            for (int d = 0; d < 4; d++) {
+                int nx = lx + DX[d];
+                int ny = ly + DY[d];
+                if (nx < 0 || nx > x1 - x0 || ny < 0 || ny >= wh) continue;
+                if (dist[nx][ny] != -1) continue;
+                if (this.map[x0 + nx][y0 + ny] == obsColor) continue;
+                dist[nx][ny] = curd + 1;
+                if (tail == q.length) q = Arrays.copyOf(q, tail * 2);
+                q[tail++] = nx * wh + ny;
+            }
+        }
+        if (t0 != 0) MapMetrics.record(MapMetrics.Op.ALL_DISTANCE, t0, tail, peak, 4L * ((long) res.width * wh + q.length));
+        return res;
+    }
+
+    /**
+     * Multiply the pixels inside the rectangle between the corners c1 and c2 (inclusive, clipped to the map)
+     * by scalar, rounding to the nearest integer. Pixels outside the window are unchanged.
+     * @param scalar the multiplication factor
+     * @param c1 one corner of the window
+     * @param c2 the opposite corner of the window
+     * @throws RuntimeException if either corner is null
+     */
+    public void mul(double scalar, Pixel2D c1, Pixel2D c2) {
+        int[] win = window(c1, c2);
+        if (win == null) return;
+        for (int x = win[0]; x <= win[2]; x++) {
+            for (int y = win[1]; y <= win[3]; y++) {
+                this.map[x][y] = (int) Math.round(this.map[x][y] * scalar);
+            }
+        }
+        touchRect(win[0], win[1], win[2], win[3]);
+    }
+
+    /**
+     * Add another Map2D into this one at an offset: pixel (x,y) of p is added to pixel (x+dx, y+dy) of this map.
+     * The parts of p that fall outside this map are ignored, so p may be smaller (or larger) than this map.
+     * p may be this map itself: every pixel is then read before it is written, as if p were a copy.
+     * @param p the Map2D to add
+     * @param dx x offset of p's origin in this map (may be negative)
+     * @param dy y offset of p's origin in this map (may be negative)
+     * @throws RuntimeException if p is null
+     */
+    public void addMap2D(Map2D p, int dx, int dy) {
+        if (p == null) throw new RuntimeException("Null map");
+        int x0 = Math.max(0, dx), x1 = (int) Math.min(this.width - 1L, (long) dx + p.getWidth() - 1);
+        int y0 = Math.max(0, dy), y1 = (int) Math.min(this.height - 1L, (long) dy + p.getHeight() - 1);
+        if (x0 > x1 || y0 > y1) return;
+        int[][] src = p instanceof Map ? ((Map) p).map : null;
+        /** when adding this map to itself, walk away from the source so no pixel is read after it was written */
+        boolean backX = p == this && dx > 0, backY = p == this && dy > 0;
+        for (int i = 0; i <= x1 - x0; i++) {
+            int x = backX ? x1 - i : x0 + i;
+            for (int j = 0; j <= y1 - y0; j++) {
+                int y = backY ? y1 - j : y0 + j;
+                this.map[x][y] += src != null ? src[x - dx][y - dy] : p.getPixel(x - dx, y - dy);
+            }
+        }
+        touchRect(x0, y0, x1, y1);
+    }
+
+    /**
+     * Direct access to the internal int[width][height] buffer, for the raster engines in this package
+     * (MapFilter, MapIO). Callers that write into it must call changed() afterwards.
+     */
+    int[][] pixels() {
+        return this.map;
+    }
+
+    /**
+     * Notify this map that its buffer was modified through pixels() (invalidates the content hash).
+     */
+    void changed() {
+        touchAll();
+    }
+
+    /**
+     * Clip the rectangle between c1 and c2 (inclusive, any order) to the map.
+     * @return {x0, y0, x1, y1} or null if the rectangle does not intersect the map
+     */
+    private int[] window(Pixel2D c1, Pixel2D c2) {
+        if (c1 == null || c2 == null) throw new RuntimeException("Null window corner");
+        int x0 = Math.max(0, Math.min(c1.getX(), c2.getX()));
+        int x1 = Math.min(this.width - 1, Math.max(c1.getX(), c2.getX()));
+        int y0 = Math.max(0, Math.min(c1.getY(), c2.getY()));
+        int y1 = Math.min(this.height - 1, Math.max(c1.getY(), c2.getY()));
+        if (x0 > x1 || y0 > y1) return null;
+        return new int[]{x0, y0, x1, y1};
+    }
+
+    private static boolean inWindow(Pixel2D p, int[] win) {
+        return p != null && p.getX() >= win[0] && p.getX() <= win[2] && p.getY() >= win[1] && p.getY() <= win[3];
+    }
+
+    /**
+     * Start a lazy BFS from start. The returned cursor yields reachable pixels layer by layer together with
+     * their distance, so the caller can stop early; a full distance map is built only on request.
+     * Same connectivity and obstacle rules as allDistance.
+     *
+     * @param start the starting Pixel2D (if null or outside the map, the cursor is empty)
+     * @param obsColor integer color representing obstacles
+     * @param cyclic whether to treat the domain as toroidal (wrap-around)
+     * @return a new BfsCursor positioned before the start pixel
+     */
+    public BfsCursor bfs(Pixel2D start, int obsColor, boolean cyclic) {
+        return bfs(start, obsColor, cyclic, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Start a lazy BFS from start that never goes beyond maxDepth steps.
+     *
+     * @param start the starting Pixel2D (if null or outside the map, the cursor is empty)
+     * @param obsColor integer color representing obstacles
+     * @param cyclic whether to treat the domain as toroidal (wrap-around)
+     * @param maxDepth the largest distance to visit (0 visits only the start pixel)
+     * @return a new BfsCursor positioned before the start pixel
+     */
+    public BfsCursor bfs(Pixel2D start, int obsColor, boolean cyclic, int maxDepth) {
+        return new BfsCursor(this.map, start, obsColor, cyclic, maxDepth);
+    }
+
+    /**
+     * Find the pixel with value color that is closest to start (in BFS steps), exploring only as far as needed.
+     *
+     * @param start the starting Pixel2D
+     * @param color the pixel value to look for
+     * @param obsColor integer color representing obstacles
+     * @param cyclic whether to treat the domain as toroidal (wrap-around)
+     * @return the nearest pixel with the given value, or null if none is reachable
+     */
+    public Pixel2D nearest(Pixel2D start, int color, int obsColor, boolean cyclic) {
+        return bfs(start, obsColor, cyclic).find((x, y, v) -> v == color);
+    }
+
+    /**
+     * Answer a batch of shortest-path queries: entry i of the result is shortestPath(sources[i], targets[i], obsColor, cyclic).
+     * Queries sharing a source are answered by a single BFS, and distinct sources are searched in parallel
+     * on the common ForkJoinPool. The map must not be modified while the batch runs.
+     *
+     * @param sources starting coordinates, one per query
+     * @param targets target coordinates, one per query (same length as sources)
+     * @param obsColor color value considered as obstacle
+     * @param cyclic whether the BFS should wrap around the borders
+     * @return an array of paths in the same order as the queries; an entry is null if that path does not exist
+     * @throws RuntimeException if either array is null or their lengths differ
+     */
+    public Pixel2D[][] shortestPaths(Pixel2D[] sources, Pixel2D[] targets, int obsColor, boolean cyclic) {
+        if (sources == null || targets == null) throw new RuntimeException("Null query array");
+        if (sources.length != targets.length) throw new RuntimeException("Query arrays differ in length");
+        return new BatchSearch(this.map, obsColor, cyclic).run(sources, targets, true);
+    }
+
+    /**
+     * Exact Euclidean distance transform: for every pixel, the squared Euclidean distance to the nearest
+     * pixel whose value is obsColor (0 on obstacles). Runs in O(width * height) with the
+     * Felzenszwalb-Huttenlocher algorithm; large maps are processed in parallel bands.
+     *
+     * @param obsColor integer color representing obstacles
+     * @param cyclic whether distances wrap around the borders (toroidal topology)
+     * @return a Map2D of squared distances (saturated at Integer.MAX_VALUE), or filled with -1 if the map has no obstacle
+     */
+    public Map2D distanceTransform(int obsColor, boolean cyclic) {
+        boolean par = (long) this.width * this.height >= MapFilter.PARALLEL_THRESHOLD;
+        return wrap(DistanceTransform.squared(this.map, obsColor, true, cyclic, par));
+    }
+
+    /**
+     * Compute the cheapest path between p1 and p2 where the cost of stepping into a pixel is its value.
+     * Pixels equal to obsColor or with a negative value are obstacles. The cost of p1 itself is not counted.
+     * Connectivity is 4-way. If cyclic is true, coordinates wrap around the map edges.
+     *
+     * @param p1 starting coordinate (non-null and must be inside the map)
+     * @param p2 target coordinate (non-null and must be inside the map)
+     * @param obsColor color value considered as obstacle
+     * @param cyclic whether the search should wrap around the borders
+     * @return Pixel2D[] ordered from start to goal if a path exists; null otherwise
+     */
+    public Pixel2D[] shortestPathWeighted(Pixel2D p1, Pixel2D p2, int obsColor, boolean cyclic) {
+        return shortestPathWeighted(p1, p2, null, obsColor, cyclic);
+    }
+
+    /**
+     * Compute the cheapest path between p1 and p2 where the cost of stepping into a pixel with value v is costs[v].
+     * Pixels equal to obsColor, values outside the table and negative table entries are obstacles.
+     * Small integer costs are searched with a Dial bucket queue, larger ones with a binary heap.
+     *
+     * @param p1 starting coordinate (non-null and must be inside the map)
+     * @param p2 target coordinate (non-null and must be inside the map)
+     * @param costs cost lookup table indexed by pixel value; if null the pixel value is used as the cost
+     * @param obsColor color value considered as obstacle
+     * @param cyclic whether the search should wrap around the borders
+     * @return Pixel2D[] ordered from start to goal if a path exists; null otherwise
+     */
+    public Pixel2D[] shortestPathWeighted(Pixel2D p1, Pixel2D p2, int[] costs, int obsColor, boolean cyclic) {
+        if (p1 == null || p2 == null) return null;
+        if (!isInside(p1) || !isInside(p2)) return null;
+        WeightedSearch ws = new WeightedSearch(this.map, costs, obsColor, cyclic);
+        if (ws.cost(p1.getX(), p1.getY()) < 0 || ws.cost(p2.getX(), p2.getY()) < 0) return null;
+        int goal = p2.getX() * this.height + p2.getY();
+        if (!ws.run(p1.getX() * this.height + p1.getY(), goal)) return null;
+        return ws.path(goal);
+    }
+
+    /**
+     * Compute the cheapest cost from start to every reachable pixel, where the cost of stepping into
+     * a pixel is its value. Obstacles and unreachable cells are left as -1 in the returned Map2D.
+     * Costs are summed in long precision; a cost above Integer.MAX_VALUE is reported as Integer.MAX_VALUE.
+     *
+     * @param start the starting Pixel2D (if null or outside the map, returns a map filled with -1)
+     * @param obsColor integer color representing obstacles
+     * @param cyclic whether to treat the domain as toroidal (wrap-around)
+     * @return a Map2D where each pixel contains the cheapest cost from start or -1
+     */
+    public Map2D allDistanceWeighted(Pixel2D start, int obsColor, boolean cyclic) {
+        return allDistanceWeighted(start, null, obsColor, cyclic);
+    }
+
+    /**
+     * Compute the cheapest cost from start to every reachable pixel, where the cost of stepping into
+     * a pixel with value v is costs[v]. Obstacles and unreachable cells are left as -1.
+     * Costs are summed in long precision; a cost above Integer.MAX_VALUE is reported as Integer.MAX_VALUE.
+     *
+     * @param start the starting Pixel2D (if null or outside the map, returns a map filled with -1)
+     * @param costs cost lookup table indexed by pixel value; if null the pixel value is used as the cost
+     * @param obsColor integer color representing obstacles
+     * @param cyclic whether to treat the domain as toroidal (wrap-around)
+     * @return a Map2D where each pixel contains the cheapest cost from start or -1
+     */
+    public Map2D allDistanceWeighted(Pixel2D start, int[] costs, int obsColor, boolean cyclic) {
+        Map res = new Map(this.width, this.height, -1);
+        if (start == null || !isInside(start)) return res;
+        WeightedSearch ws = new WeightedSearch(this.map, costs, obsColor, cyclic);
+        if (ws.cost(start.getX(), start.getY()) < 0) return res;
+        ws.run(start.getX() * this.height + start.getY(), -1);
+        for (int x = 0, c = 0; x < this.width; x++) {
+            for (int y = 0; y < this.height; y++, c++) {
+                /** costs beyond the int range saturate */
+                res.map[x][y] = (int) Math.min(Integer.MAX_VALUE, ws.dist[c]);
             }
         }
+        res.touchAll();
         return res;
     }
 }
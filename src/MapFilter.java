@@ -0,0 +1,309 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Raster filters over a Map: grayscale and binary erosion/dilation and separable box / Gaussian-like blurs.
+ * All filters work in place on the given Map.
+ *
+ * Design notes:
+ * - Min/max filters along a line use the van Herk / Gil-Werman algorithm (block prefix and suffix extrema),
+ *   so a SQUARE or CROSS structuring element costs about 3 comparisons per pixel and axis, whatever the radius.
+ *   A grayscale DISK is the union of vertical chords, one line pass per distinct chord length, i.e. O(radius)
+ *   per pixel. Binary DISK filters threshold the exact Euclidean distance transform instead, which is linear
+ *   whatever the radius.
+ * - Blurs are separable running sums (O(1) per pixel and axis). Windows are clipped at the map border,
+ *   and min/max filters ignore pixels outside the map.
+ * - Work is split into bands of columns or rows that run in parallel on the common ForkJoinPool
+ *   once the map has at least PARALLEL_THRESHOLD pixels; each band allocates its own line buffers once.
+ *
+ * Usage example (inflate obstacles by a robot radius before planning):
+ * MapFilter.dilateBinary(map, obsColor, 3, MapFilter.Shape.DISK);
+ * Pixel2D[] path = map.shortestPath(a, b, obsColor, false);
+ */
+public final class MapFilter {
+
+    /**
+     * Structuring elements: the (2r+1)x(2r+1) square, the plus-shaped cross of arm length r,
+     * and the disk of all offsets with dx*dx + dy*dy <= r*r (the same pixels drawCircle covers).
+     */
+    public enum Shape { SQUARE, CROSS, DISK }
+
+    /** maps with at least this many pixels are filtered in parallel bands */
+    static final long PARALLEL_THRESHOLD = 1 << 16;
+
+    private MapFilter() {
+    }
+
+    /**
+     * Grayscale dilation: every pixel becomes the maximum over its structuring element.
+     * @param m the map to filter (in place)
+     * @param radius the radius of the structuring element (0 leaves the map unchanged)
+     * @param shape the structuring element
+     * @throws RuntimeException if m or shape is null or radius is negative
+     */
+    public static void dilate(Map m, int radius, Shape shape) {
+        check(m, radius, shape);
+        store(m, morph(m.pixels(), radius, shape, true, parallel(m)));
+    }
+
+    /**
+     * Grayscale erosion: every pixel becomes the minimum over its structuring element.
+     * @param m the map to filter (in place)
+     * @param radius the radius of the structuring element (0 leaves the map unchanged)
+     * @param shape the structuring element
+     * @throws RuntimeException if m or shape is null or radius is negative
+     */
+    public static void erode(Map m, int radius, Shape shape) {
+        check(m, radius, shape);
+        store(m, morph(m.pixels(), radius, shape, false, parallel(m)));
+    }
+
+    /**
+     * Binary dilation of the pixels equal to color: every pixel whose structuring element contains
+     * a color pixel is set to color. With the obstacle color this inflates obstacles by radius.
+     * @throws RuntimeException if m or shape is null or radius is negative
+     */
+    public static void dilateBinary(Map m, int color, int radius, Shape shape) {
+        check(m, radius, shape);
+        int[][] px = m.pixels();
+        if (shape == Shape.DISK) {
+            /** a pixel is covered iff its squared distance to the nearest color pixel is at most radius^2 */
+            int[][] d2 = DistanceTransform.squared(px, color, true, false, parallel(m));
+            long r2 = (long) radius * radius;
+            for (int x = 0; x < px.length; x++) {
+                for (int y = 0; y < px[x].length; y++) {
+                    if (d2[x][y] >= 0 && d2[x][y] <= r2) px[x][y] = color;
+                }
+            }
+            m.changed();
+            return;
+        }
+        int[][] hit = morph(indicator(px, color), radius, shape, true, parallel(m));
+        for (int x = 0; x < px.length; x++) {
+            for (int y = 0; y < px[x].length; y++) {
+                if (hit[x][y] == 1) px[x][y] = color;
+            }
+        }
+        m.changed();
+    }
+
+    /**
+     * Binary erosion of the pixels equal to color: a color pixel whose structuring element contains any
+     * other value is set to background. Pixels outside the map do not erode.
+     * @throws RuntimeException if m or shape is null or radius is negative
+     */
+    public static void erodeBinary(Map m, int color, int background, int radius, Shape shape) {
+        check(m, radius, shape);
+        int[][] px = m.pixels();
+        if (shape == Shape.DISK) {
+            /** a color pixel survives iff every other value is further than radius away */
+            int[][] d2 = DistanceTransform.squared(px, color, false, false, parallel(m));
+            long r2 = (long) radius * radius;
+            for (int x = 0; x < px.length; x++) {
+                for (int y = 0; y < px[x].length; y++) {
+                    if (px[x][y] == color && d2[x][y] >= 0 && d2[x][y] <= r2) px[x][y] = background;
+                }
+            }
+            m.changed();
+            return;
+        }
+        int[][] keep = morph(indicator(px, color), radius, shape, false, parallel(m));
+        for (int x = 0; x < px.length; x++) {
+            for (int y = 0; y < px[x].length; y++) {
+                if (px[x][y] == color && keep[x][y] == 0) px[x][y] = background;
+            }
+        }
+        m.changed();
+    }
+
+    /**
+     * Box blur: every pixel becomes the mean of the (2r+1)x(2r+1) window clipped to the map.
+     * The mean is computed separably (columns, then rows) and rounded to the nearest integer after each pass.
+     * @throws RuntimeException if m is null or radius is negative
+     */
+    public static void boxBlur(Map m, int radius) {
+        check(m, radius, Shape.SQUARE);
+        if (radius == 0) return;
+        boolean par = parallel(m);
+        int[][] src = m.pixels();
+        int[][] tmp = new int[src.length][src[0].length];
+        box(src, tmp, radius, true, par);
+        box(tmp, src, radius, false, par);
+        m.changed();
+    }
+
+    /**
+     * Gaussian-like blur: three successive box blurs of the given radius, which approximate a Gaussian
+     * with variance radius * (radius + 1) using integer arithmetic only.
+     * @throws RuntimeException if m is null or radius is negative
+     */
+    public static void gaussianBlur(Map m, int radius) {
+        for (int i = 0; i < 3; i++) boxBlur(m, radius);
+    }
+
+    /**
+     * Min (max == false) or max filter of src with the given structuring element; returns a new array.
+     */
+    static int[][] morph(int[][] src, int r, Shape shape, boolean max, boolean par) {
+        int w = src.length, h = src[0].length;
+        int[][] out = new int[w][h];
+        if (r == 0) {
+            for (int x = 0; x < w; x++) System.arraycopy(src[x], 0, out[x], 0, h);
+            return out;
+        }
+        if (shape == Shape.SQUARE) {
+            int[][] tmp = new int[w][h];
+            lines(src, tmp, r, max, true, par);
+            lines(tmp, out, r, max, false, par);
+            return out;
+        }
+        if (shape == Shape.CROSS) {
+            int[][] tmp = new int[w][h];
+            lines(src, tmp, r, max, true, par);
+            lines(src, out, r, max, false, par);
+            bands(w, par, (from, to) -> {
+                for (int x = from; x < to; x++) {
+                    for (int y = 0; y < h; y++) out[x][y] = max ? Math.max(out[x][y], tmp[x][y]) : Math.min(out[x][y], tmp[x][y]);
+                }
+            });
+            return out;
+        }
+        /** DISK: column offset dx covers the vertical chord |dy| <= half[dx + r] */
+        int[] half = new int[2 * r + 1];
+        for (int dx = -r; dx <= r; dx++) {
+            int c = (int) Math.sqrt((double) r * r - (double) dx * dx);
+            while ((long) c * c + (long) dx * dx > (long) r * r) c--;
+            while ((long) (c + 1) * (c + 1) + (long) dx * dx <= (long) r * r) c++;
+            half[dx + r] = c;
+        }
+        int id = max ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        for (int[] col : out) Arrays.fill(col, id);
+        int[][] chord = new int[w][h];
+        for (int len = 0; len <= r; len++) {
+            boolean used = false;
+            for (int v : half) used |= v == len;
+            if (!used) continue;
+            lines(src, chord, len, max, true, par);
+            final int l = len;
+            bands(w, par, (from, to) -> {
+                for (int x = from; x < to; x++) {
+                    for (int dx = -r; dx <= r; dx++) {
+                        if (half[dx + r] != l || x + dx < 0 || x + dx >= w) continue;
+                        int[] c = chord[x + dx], o = out[x];
+                        for (int y = 0; y < h; y++) o[y] = max ? Math.max(o[y], c[y]) : Math.min(o[y], c[y]);
+                    }
+                }
+            });
+        }
+        return out;
+    }
+
+    /**
+     * 1D min/max filter of radius r along y (each column) or along x (each row), from src into dst.
+     */
+    private static void lines(int[][] src, int[][] dst, int r, boolean max, boolean alongY, boolean par) {
+        int w = src.length, h = src[0].length;
+        if (alongY) {
+            bands(w, par, (from, to) -> {
+                int[] g = new int[h + 2 * r], hh = new int[h + 2 * r];
+                for (int x = from; x < to; x++) runMinMax(src[x], dst[x], h, r, max, g, hh);
+            });
+        } else {
+            bands(h, par, (from, to) -> {
+                int[] row = new int[w], res = new int[w];
+                int[] g = new int[w + 2 * r], hh = new int[w + 2 * r];
+                for (int y = from; y < to; y++) {
+                    for (int x = 0; x < w; x++) row[x] = src[x][y];
+                    runMinMax(row, res, w, r, max, g, hh);
+                    for (int x = 0; x < w; x++) dst[x][y] = res[x];
+                }
+            });
+        }
+    }
+
+    /**
+     * van Herk / Gil-Werman running min/max over windows [i-r, i+r] of src[0..n), padded with the identity.
+     * g and h are scratch arrays of length at least n + 2r.
+     */
+    static void runMinMax(int[] src, int[] dst, int n, int r, boolean max, int[] g, int[] h) {
+        int k = 2 * r + 1, m = n + 2 * r;
+        int id = max ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        for (int j = 0; j < m; j++) {
+            int v = (j >= r && j < r + n) ? src[j - r] : id;
+            g[j] = (j % k == 0) ? v : (max ? Math.max(g[j - 1], v) : Math.min(g[j - 1], v));
+        }
+        for (int j = m - 1; j >= 0; j--) {
+            int v = (j >= r && j < r + n) ? src[j - r] : id;
+            h[j] = (j % k == k - 1 || j == m - 1) ? v : (max ? Math.max(h[j + 1], v) : Math.min(h[j + 1], v));
+        }
+        for (int i = 0; i < n; i++) {
+            dst[i] = max ? Math.max(h[i], g[i + 2 * r]) : Math.min(h[i], g[i + 2 * r]);
+        }
+    }
+
+    /**
+     * Rounded mean over windows [i-r, i+r] clipped to the map, along y (columns) or along x (rows).
+     */
+    private static void box(int[][] src, int[][] dst, int r, boolean alongY, boolean par) {
+        int w = src.length, h = src[0].length;
+        int n = alongY ? h : w;
+        bands(alongY ? w : h, par, (from, to) -> {
+            int[] line = new int[n];
+            for (int a = from; a < to; a++) {
+                for (int i = 0; i < n; i++) line[i] = alongY ? src[a][i] : src[i][a];
+                long sum = 0;
+                int lo = 0, hi = -1;
+                for (int i = 0; i < n; i++) {
+                    while (hi < Math.min(n - 1, i + r)) sum += line[++hi];
+                    while (lo < i - r) sum -= line[lo++];
+                    long cnt = hi - lo + 1;
+                    int v = (int) Math.floorDiv(2 * sum + cnt, 2 * cnt);
+                    if (alongY) dst[a][i] = v;
+                    else dst[i][a] = v;
+                }
+            }
+        });
+    }
+
+    private static int[][] indicator(int[][] px, int color) {
+        int[][] ans = new int[px.length][px[0].length];
+        for (int x = 0; x < px.length; x++) {
+            for (int y = 0; y < px[x].length; y++) ans[x][y] = px[x][y] == color ? 1 : 0;
+        }
+        return ans;
+    }
+
+    private static void store(Map m, int[][] res) {
+        int[][] px = m.pixels();
+        for (int x = 0; x < px.length; x++) System.arraycopy(res[x], 0, px[x], 0, px[x].length);
+        m.changed();
+    }
+
+    private static boolean parallel(Map m) {
+        return (long) m.getWidth() * m.getHeight() >= PARALLEL_THRESHOLD;
+    }
+
+    private static void check(Map m, int radius, Shape shape) {
+        if (m == null) throw new RuntimeException("Null map");
+        if (shape == null) throw new RuntimeException("Null shape");
+        if (radius < 0) throw new RuntimeException("Negative radius");
+    }
+
+    /** A contiguous range [from, to) of columns or rows. */
+    interface Band {
+        void run(int from, int to);
+    }
+
+    /**
+     * Run task over [0, n) split into bands; in parallel on the common pool when par is true.
+     */
+    static void bands(int n, boolean par, Band task) {
+        if (!par || n < 2) {
+            task.run(0, n);
+            return;
+        }
+        int bands = Math.min(n, 4 * ForkJoinPool.getCommonPoolParallelism());
+        IntStream.range(0, bands).parallel().forEach(b -> task.run((int) ((long) b * n / bands), (int) ((long) (b + 1) * n / bands)));
+    }
+}
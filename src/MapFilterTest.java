@@ -0,0 +1,98 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.Random;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MapFilterTest {
+
+    /** brute-force reference: max (or min) over the structuring element, ignoring pixels outside the map */
+    private static int[][] reference(int[][] src, int r, MapFilter.Shape shape, boolean max) {
+        int w = src.length, h = src[0].length;
+        int[][] ans = new int[w][h];
+        for (int x = 0; x < w; x++) {
+            for (int y = 0; y < h; y++) {
+                int v = src[x][y];
+                for (int dx = -r; dx <= r; dx++) {
+                    for (int dy = -r; dy <= r; dy++) {
+                        if (shape == MapFilter.Shape.CROSS && dx != 0 && dy != 0) continue;
+                        if (shape == MapFilter.Shape.DISK && dx * dx + dy * dy > r * r) continue;
+                        int nx = x + dx, ny = y + dy;
+                        if (nx < 0 || nx >= w || ny < 0 || ny >= h) continue;
+                        v = max ? Math.max(v, src[nx][ny]) : Math.min(v, src[nx][ny]);
+                    }
+                }
+                ans[x][y] = v;
+            }
+        }
+        return ans;
+    }
+
+    private static int[][] random(Random rnd, int w, int h) {
+        int[][] a = new int[w][h];
+        for (int x = 0; x < w; x++) {
+            for (int y = 0; y < h; y++) a[x][y] = rnd.nextInt(100) - 50;
+        }
+        return a;
+    }
+
+    @Test
+    @Timeout(value = 2000, unit = MILLISECONDS)
+    void erodeAndDilateMatchBruteForce() {
+        Random rnd = new Random(11);
+        for (MapFilter.Shape shape : MapFilter.Shape.values()) {
+            for (int t = 0; t < 10; t++) {
+                int[][] src = random(rnd, 1 + rnd.nextInt(30), 1 + rnd.nextInt(30));
+                int r = rnd.nextInt(6);
+                Map m = new Map(src);
+                MapFilter.dilate(m, r, shape);
+                assertEquals(new Map(reference(src, r, shape, true)), m);
+                m = new Map(src);
+                MapFilter.erode(m, r, shape);
+                assertEquals(new Map(reference(src, r, shape, false)), m);
+            }
+        }
+    }
+
+    @Test
+    @Timeout(value = 2000, unit = MILLISECONDS)
+    void parallelBandsGiveSameResult() {
+        int[][] src = random(new Random(3), 300, 260);
+        Map m = new Map(src);
+        MapFilter.dilate(m, 4, MapFilter.Shape.DISK);
+        assertEquals(new Map(reference(src, 4, MapFilter.Shape.DISK, true)), m);
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void binaryInflateMatchesDrawCircle() {
+        Map m = new Map(20, 20, 0);
+        m.setPixel(5, 5, 1);
+        m.setPixel(14, 12, 1);
+        Map expected = new Map(20, 20, 0);
+        expected.drawCircle(new Index2D(5, 5), 3, 1);
+        expected.drawCircle(new Index2D(14, 12), 3, 1);
+        MapFilter.dilateBinary(m, 1, 3, MapFilter.Shape.DISK);
+        assertEquals(expected, m);
+        MapFilter.erodeBinary(m, 1, 0, 3, MapFilter.Shape.DISK);
+        assertEquals(1, m.getPixel(5, 5));
+        assertEquals(0, m.getPixel(5, 7));
+        assertThrows(RuntimeException.class, () -> MapFilter.dilateBinary(null, 1, 1, MapFilter.Shape.SQUARE));
+        assertThrows(RuntimeException.class, () -> MapFilter.erode(new Map(3), -1, MapFilter.Shape.SQUARE));
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void boxBlurAveragesClippedWindow() {
+        Map m = new Map(new int[][]{{0, 0, 0}, {0, 9, 0}, {0, 0, 0}});
+        MapFilter.boxBlur(m, 1);
+        assertEquals(1, m.getPixel(1, 1));
+        // corner: the column pass gives round(9 / 2) = 5, the row pass round(5 / 2) = 3
+        assertEquals(3, m.getPixel(0, 0));
+        Map flat = new Map(5, 5, 7);
+        MapFilter.gaussianBlur(flat, 2);
+        assertEquals(new Map(5, 5, 7), flat);
+    }
+}
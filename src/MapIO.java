@@ -0,0 +1,378 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.imageio.ImageIO;
+
+/**
+ * Streaming import and export of maps: binary PGM (P5) / PPM (P6), PNG and CSV.
+ *
+ * File formats:
+ * - PGM: one gray sample per pixel, 8 bit (maxval < 256) or 16 bit big-endian; values must be in [0, 65535].
+ * - PPM: one RGB triple per pixel (8 bit), the value being 0xRRGGBB; values must be in [0, 0xFFFFFF].
+ * - PNG: written as 8 or 16 bit gray when the values allow it, else as RGB or ARGB, so every map round-trips.
+ *   Gray images read back as their sample, color images as 0xRRGGBB (0xAARRGGBB if they have alpha).
+ * - CSV: one line per row (y), comma separated values for x = 0..width-1.
+ * In every format row y of the file is the map row y, i.e. map pixel (x, y).
+ *
+ * Design notes:
+ * - PGM/PPM and CSV go through a FileChannel and a fixed 64KB buffer; pixels are decoded straight into the
+ *   int[width][height] array that becomes the Map (no intermediate int[][] and no defensive copy).
+ *   CSV is scanned twice: once for the dimensions, once to parse.
+ * - PNG decoding is delegated to javax.imageio; the decoded image is the only full-size intermediate.
+ * - Malformed input and I/O failures are reported as RuntimeException.
+ *
+ * Usage example:
+ * Map m = MapIO.readPnm(Path.of("maze.pgm"));
+ * MapIO.writeCsv(m, Path.of("maze.csv"));
+ */
+public final class MapIO {
+
+    private static final int BUFFER = 1 << 16;
+
+    private MapIO() {
+    }
+
+    /**
+     * Read a binary PGM (P5) or PPM (P6) image.
+     * @param file the image file
+     * @return a new Map with the image's dimensions
+     * @throws RuntimeException if the file cannot be read or is not a supported P5/P6 image
+     */
+    public static Map readPnm(Path file) {
+        try (In in = new In(file)) {
+            int magic0 = in.read(), magic1 = in.read();
+            if (magic0 != 'P' || (magic1 != '5' && magic1 != '6')) throw new RuntimeException("Not a P5/P6 image");
+            boolean rgb = magic1 == '6';
+            int w = in.headerInt(), h = in.headerInt(), maxval = in.headerInt();
+            if (w <= 0 || h <= 0) throw new RuntimeException("Invalid dimensions");
+            if (maxval <= 0 || maxval > 65535 || (rgb && maxval > 255)) throw new RuntimeException("Unsupported maxval " + maxval);
+            int[][] px = new int[w][h];
+            boolean wide = maxval > 255;
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    int v;
+                    if (rgb) v = (in.sample() << 16) | (in.sample() << 8) | in.sample();
+                    else if (wide) v = (in.sample() << 8) | in.sample();
+                    else v = in.sample();
+                    px[x][y] = v;
+                }
+            }
+            return Map.wrap(px);
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read " + file, e);
+        }
+    }
+
+    /**
+     * Write the map as a binary PGM (P5), 8 bit if every value is below 256, else 16 bit.
+     * @throws RuntimeException if a value is outside [0, 65535] or the file cannot be written
+     */
+    public static void writePgm(Map2D m, Path file) {
+        int[][] px = raw(m);
+        int max = checkRange(px, 65535, "PGM");
+        boolean wide = max > 255;
+        try (Out out = new Out(file)) {
+            out.ascii("P5\n" + px.length + " " + px[0].length + "\n" + (wide ? 65535 : 255) + "\n");
+            for (int y = 0; y < px[0].length; y++) {
+                for (int[] column : px) {
+                    if (wide) out.write(column[y] >>> 8);
+                    out.write(column[y]);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot write " + file, e);
+        }
+    }
+
+    /**
+     * Write the map as a binary PPM (P6), each value being an 0xRRGGBB color.
+     * @throws RuntimeException if a value is outside [0, 0xFFFFFF] or the file cannot be written
+     */
+    public static void writePpm(Map2D m, Path file) {
+        int[][] px = raw(m);
+        checkRange(px, 0xFFFFFF, "PPM");
+        try (Out out = new Out(file)) {
+            out.ascii("P6\n" + px.length + " " + px[0].length + "\n255\n");
+            for (int y = 0; y < px[0].length; y++) {
+                for (int[] column : px) {
+                    out.write(column[y] >>> 16);
+                    out.write(column[y] >>> 8);
+                    out.write(column[y]);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot write " + file, e);
+        }
+    }
+
+    /**
+     * Read a PNG (or any other format javax.imageio can decode).
+     * @throws RuntimeException if the file cannot be read or decoded
+     */
+    public static Map readPng(Path file) {
+        BufferedImage img;
+        try {
+            img = ImageIO.read(file.toFile());
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read " + file, e);
+        }
+        if (img == null) throw new RuntimeException("Unsupported image " + file);
+        int w = img.getWidth(), h = img.getHeight();
+        int[][] px = new int[w][h];
+        int[] row = new int[w];
+        boolean gray = img.getRaster().getNumBands() == 1 && img.getColorModel().getNumColorComponents() == 1;
+        int mask = img.getColorModel().hasAlpha() ? -1 : 0xFFFFFF;
+        for (int y = 0; y < h; y++) {
+            if (gray) img.getRaster().getSamples(0, y, w, 1, 0, row);
+            else img.getRGB(0, y, w, 1, row, 0, w);
+            for (int x = 0; x < w; x++) px[x][y] = gray ? row[x] : row[x] & mask;
+        }
+        return Map.wrap(px);
+    }
+
+    /**
+     * Write the map as a PNG: 8 bit gray for values in [0, 255], 16 bit gray for [0, 65535],
+     * RGB for [0, 0xFFFFFF] and ARGB (the value's high byte as alpha) otherwise.
+     * @throws RuntimeException if the file cannot be written
+     */
+    public static void writePng(Map2D m, Path file) {
+        int[][] px = raw(m);
+        int w = px.length, h = px[0].length;
+        int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+        for (int[] column : px) {
+            for (int v : column) {
+                if (v < min) min = v;
+                if (v > max) max = v;
+            }
+        }
+        int type;
+        if (min >= 0 && max <= 255) type = BufferedImage.TYPE_BYTE_GRAY;
+        else if (min >= 0 && max <= 65535) type = BufferedImage.TYPE_USHORT_GRAY;
+        else if (min >= 0 && max <= 0xFFFFFF) type = BufferedImage.TYPE_INT_RGB;
+        else type = BufferedImage.TYPE_INT_ARGB;
+        BufferedImage img = new BufferedImage(w, h, type);
+        WritableRaster raster = img.getRaster();
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) row[x] = px[x][y];
+            if (raster.getNumBands() == 1) raster.setSamples(0, y, w, 1, 0, row);
+            else img.setRGB(0, y, w, 1, row, 0, w);
+        }
+        try {
+            if (!ImageIO.write(img, "png", file.toFile())) throw new RuntimeException("No PNG writer available");
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot write " + file, e);
+        }
+    }
+
+    /**
+     * Read a CSV of integers, one line per row; blank lines are ignored.
+     * @throws RuntimeException if the file cannot be read, a value is not an integer or the rows are ragged
+     */
+    public static Map readCsv(Path file) {
+        int w = 0, h = 0;
+        try (In in = new In(file)) {
+            int fields = 1, c;
+            boolean content = false;
+            while ((c = in.read()) >= 0) {
+                if (c == ',') fields++;
+                else if (c == '\n') {
+                    if (content) {
+                        if (h == 0) w = fields;
+                        else if (fields != w) throw new RuntimeException("Ragged CSV at line " + (h + 1));
+                        h++;
+                    }
+                    fields = 1;
+                    content = false;
+                } else if (c != '\r' && c != ' ' && c != '\t') content = true;
+            }
+            if (content) {
+                if (h == 0) w = fields;
+                else if (fields != w) throw new RuntimeException("Ragged CSV at line " + (h + 1));
+                h++;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read " + file, e);
+        }
+        if (w == 0 || h == 0) throw new RuntimeException("Empty CSV");
+        int[][] px = new int[w][h];
+        try (In in = new In(file)) {
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) px[x][y] = in.csvInt(x == w - 1);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot read " + file, e);
+        }
+        return Map.wrap(px);
+    }
+
+    /**
+     * Write the map as CSV, one line per row.
+     * @throws RuntimeException if the file cannot be written
+     */
+    public static void writeCsv(Map2D m, Path file) {
+        int[][] px = raw(m);
+        byte[] digits = new byte[11];
+        try (Out out = new Out(file)) {
+            for (int y = 0; y < px[0].length; y++) {
+                for (int x = 0; x < px.length; x++) {
+                    if (x > 0) out.write(',');
+                    out.number(px[x][y], digits);
+                }
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Cannot write " + file, e);
+        }
+    }
+
+    /** The pixels of m without a copy when m is a Map. */
+    private static int[][] raw(Map2D m) {
+        if (m == null) throw new RuntimeException("Map is null");
+        return m instanceof Map ? ((Map) m).pixels() : m.getMap();
+    }
+
+    /** @return the largest value, after checking every value is in [0, limit] */
+    private static int checkRange(int[][] px, int limit, String format) {
+        int max = 0;
+        for (int[] column : px) {
+            for (int v : column) {
+                if (v < 0 || v > limit) throw new RuntimeException("Value " + v + " out of " + format + " range");
+                if (v > max) max = v;
+            }
+        }
+        return max;
+    }
+
+    /** Buffered byte reader over a FileChannel. */
+    private static final class In implements AutoCloseable {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocate(BUFFER);
+
+        In(Path file) throws IOException {
+            this.ch = FileChannel.open(file, StandardOpenOption.READ);
+            buf.flip();
+        }
+
+        /** @return the next byte (0..255) or -1 at end of file */
+        int read() throws IOException {
+            if (!buf.hasRemaining()) {
+                buf.clear();
+                int n;
+                do {
+                    n = ch.read(buf);
+                } while (n == 0);
+                buf.flip();
+                if (n < 0) return -1;
+            }
+            return buf.get() & 0xFF;
+        }
+
+        /** @return the next raster byte */
+        int sample() throws IOException {
+            int b = read();
+            if (b < 0) throw new RuntimeException("Truncated image");
+            return b;
+        }
+
+        /** Parse a PNM header number, skipping whitespace and comments, and consume one trailing whitespace. */
+        int headerInt() throws IOException {
+            int c = read();
+            while (c == '#' || Character.isWhitespace(c)) {
+                if (c == '#') {
+                    while (c >= 0 && c != '\n') c = read();
+                }
+                c = read();
+            }
+            if (c < '0' || c > '9') throw new RuntimeException("Malformed image header");
+            long v = 0;
+            while (c >= '0' && c <= '9') {
+                v = v * 10 + (c - '0');
+                if (v > Integer.MAX_VALUE) throw new RuntimeException("Malformed image header");
+                c = read();
+            }
+            if (!Character.isWhitespace(c)) throw new RuntimeException("Malformed image header");
+            return (int) v;
+        }
+
+        /** Parse the next CSV value and consume its separator (a comma, or the end of line when last). */
+        int csvInt(boolean last) throws IOException {
+            int c = read();
+            while (c == ' ' || c == '\t' || (c == '\r' || c == '\n')) c = read();
+            boolean neg = c == '-';
+            if (neg || c == '+') c = read();
+            if (c < '0' || c > '9') throw new RuntimeException("Malformed CSV value");
+            long v = 0;
+            while (c >= '0' && c <= '9') {
+                v = v * 10 + (c - '0');
+                if (v > 1L + Integer.MAX_VALUE) throw new RuntimeException("CSV value out of int range");
+                c = read();
+            }
+            while (c == ' ' || c == '\t') c = read();
+            if (last ? (c != '\n' && c != '\r' && c >= 0) : c != ',') throw new RuntimeException("Malformed CSV row");
+            v = neg ? -v : v;
+            if (v > Integer.MAX_VALUE) throw new RuntimeException("CSV value out of int range");
+            return (int) v;
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+    }
+
+    /** Buffered byte writer over a FileChannel. */
+    private static final class Out implements AutoCloseable {
+        private final FileChannel ch;
+        private final ByteBuffer buf = ByteBuffer.allocate(BUFFER);
+
+        Out(Path file) throws IOException {
+            this.ch = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /** Write the low byte of b. */
+        void write(int b) throws IOException {
+            if (!buf.hasRemaining()) flush();
+            buf.put((byte) b);
+        }
+
+        void ascii(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++) write(s.charAt(i));
+        }
+
+        /** Write v in decimal, using digits (at least 11 bytes) as scratch. */
+        void number(int v, byte[] digits) throws IOException {
+            long u = v;
+            if (u < 0) {
+                write('-');
+                u = -u;
+            }
+            int n = 0;
+            do {
+                digits[n++] = (byte) ('0' + u % 10);
+                u /= 10;
+            } while (u != 0);
+            while (n > 0) write(digits[--n]);
+        }
+
+        private void flush() throws IOException {
+            buf.flip();
+            while (buf.hasRemaining()) ch.write(buf);
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                ch.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MapIOTest {
+
+    private static Map random(Random rnd, int w, int h, int lo, int hi) {
+        Map m = new Map(w, h, 0);
+        for (int x = 0; x < w; x++) {
+            for (int y = 0; y < h; y++) m.setPixel(x, y, lo + rnd.nextInt(hi - lo));
+        }
+        return m;
+    }
+
+    private static Path temp(String suffix) throws IOException {
+        Path p = Files.createTempFile("mapio", suffix);
+        p.toFile().deleteOnExit();
+        return p;
+    }
+
+    @Test
+    @Timeout(value = 2000, unit = MILLISECONDS)
+    void pnmRoundTrip() throws IOException {
+        Random rnd = new Random(1);
+        Path f = temp(".pgm");
+        Map gray = random(rnd, 37, 23, 0, 256);
+        MapIO.writePgm(gray, f);
+        assertEquals(gray, MapIO.readPnm(f));
+        Map wide = random(rnd, 5, 300, 0, 65536);
+        MapIO.writePgm(wide, f);
+        assertEquals(wide, MapIO.readPnm(f));
+        Map color = random(rnd, 300, 7, 0, 0x1000000);
+        MapIO.writePpm(color, f);
+        assertEquals(color, MapIO.readPnm(f));
+        assertThrows(RuntimeException.class, () -> MapIO.writePgm(new Map(2, 2, -1), f));
+    }
+
+    @Test
+    @Timeout(value = 2000, unit = MILLISECONDS)
+    void pnmHeaderWithComments() throws IOException {
+        Path f = temp(".pgm");
+        byte[] header = "P5\n# made by hand\n3 2\n255\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] data = new byte[header.length + 6];
+        System.arraycopy(header, 0, data, 0, header.length);
+        for (int i = 0; i < 6; i++) data[header.length + i] = (byte) (250 + i);
+        Files.write(f, data);
+        Map m = MapIO.readPnm(f);
+        assertEquals(3, m.getWidth());
+        assertEquals(2, m.getHeight());
+        assertEquals(250, m.getPixel(0, 0));
+        assertEquals(255, m.getPixel(2, 1));
+        Files.write(f, "P5\n3 2\n255\n\1\2".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(RuntimeException.class, () -> MapIO.readPnm(f));
+    }
+
+    @Test
+    @Timeout(value = 5000, unit = MILLISECONDS)
+    void pngRoundTrip() throws IOException {
+        Random rnd = new Random(2);
+        Path f = temp(".png");
+        int[][] ranges = {{0, 256}, {0, 65536}, {0, 0x1000000}, {-1000, 1000}};
+        for (int[] r : ranges) {
+            Map m = random(rnd, 19, 11, r[0], r[1]);
+            MapIO.writePng(m, f);
+            assertEquals(m, MapIO.readPng(f));
+        }
+    }
+
+    @Test
+    @Timeout(value = 2000, unit = MILLISECONDS)
+    void csvRoundTripAndErrors() throws IOException {
+        Path f = temp(".csv");
+        Map m = random(new Random(3), 13, 9, Integer.MIN_VALUE / 2, Integer.MAX_VALUE / 2);
+        m.setPixel(0, 0, Integer.MIN_VALUE);
+        m.setPixel(1, 0, Integer.MAX_VALUE);
+        MapIO.writeCsv(m, f);
+        assertEquals(m, MapIO.readCsv(f));
+        Files.write(f, "1, 2,3\r\n-4,5 ,6\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        Map small = MapIO.readCsv(f);
+        assertEquals(3, small.getWidth());
+        assertEquals(2, small.getHeight());
+        assertEquals(-4, small.getPixel(0, 1));
+        assertEquals(5, small.getPixel(1, 1));
+        Files.write(f, "1,2\n3\n".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(RuntimeException.class, () -> MapIO.readCsv(f));
+        Files.write(f, "1,x\n".getBytes(StandardCharsets.US_ASCII));
+        assertThrows(RuntimeException.class, () -> MapIO.readCsv(f));
+    }
+}
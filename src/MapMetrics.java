@@ -0,0 +1,234 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Opt-in instrumentation of the expensive Map operations (fill, shortestPath, allDistance, draw*, rescale).
+ *
+ * For every operation it collects the call count, total and histogram of latencies (power-of-two nanosecond
+ * buckets), pixels visited, the peak BFS queue length and an estimate of the bytes allocated.
+ * The numbers are exposed through JMX (registerMBean, see MapMetricsMXBean) and every call is also emitted
+ * as a JFR event (MapOperationEvent) when a flight recording with that event enabled is running.
+ *
+ * Metrics are disabled by default. While disabled an instrumented call costs one volatile read in start()
+ * and one comparison before record(); no timing is taken and nothing is allocated.
+ *
+ * Usage example:
+ * MapMetrics.setEnabled(true);
+ * MapMetrics.registerMBean();
+ * long calls = MapMetrics.calls(MapMetrics.Op.FILL);
+ */
+public final class MapMetrics {
+
+    /**
+     * The instrumented operations.
+     */
+    public enum Op { FILL, SHORTEST_PATH, ALL_DISTANCE, DRAW_CIRCLE, DRAW_LINE, DRAW_RECT, RESCALE }
+
+    /** JMX name under which registerMBean publishes the metrics */
+    public static final String OBJECT_NAME = "I2CS:type=MapMetrics";
+
+    /** number of latency histogram buckets; bucket i counts calls that took [2^i, 2^(i+1)) nanoseconds */
+    public static final int BUCKETS = 64;
+
+    private static final int OPS = Op.values().length;
+    private static volatile boolean enabled;
+    private static final LongAdder[] CALLS = adders();
+    private static final LongAdder[] NANOS = adders();
+    private static final LongAdder[] CELLS = adders();
+    private static final LongAdder[] BYTES = adders();
+    private static final LongAccumulator[] QUEUE_PEAK = new LongAccumulator[OPS];
+    private static final AtomicLongArray[] HISTOGRAM = new AtomicLongArray[OPS];
+
+    static {
+        for (int i = 0; i < OPS; i++) {
+            QUEUE_PEAK[i] = new LongAccumulator(Math::max, 0);
+            HISTOGRAM[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    private MapMetrics() {
+    }
+
+    /** @return true if metrics are currently collected */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turn collection on or off. Already collected numbers are kept (see reset).
+     */
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    /**
+     * Register the metrics in the platform MBean server under OBJECT_NAME (does nothing if already registered).
+     * @throws RuntimeException if the registration fails
+     */
+    public static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) server.registerMBean(new Bean(), name);
+        } catch (Exception e) {
+            throw new RuntimeException("Cannot register MapMetrics MBean", e);
+        }
+    }
+
+    /**
+     * Clear every counter and histogram.
+     */
+    public static void reset() {
+        for (int i = 0; i < OPS; i++) {
+            CALLS[i].reset();
+            NANOS[i].reset();
+            CELLS[i].reset();
+            BYTES[i].reset();
+            QUEUE_PEAK[i].reset();
+            for (int b = 0; b < BUCKETS; b++) HISTOGRAM[i].set(b, 0);
+        }
+    }
+
+    /** @return number of recorded calls of op */
+    public static long calls(Op op) {
+        return CALLS[op.ordinal()].sum();
+    }
+
+    /** @return total recorded latency of op, in nanoseconds */
+    public static long totalNanos(Op op) {
+        return NANOS[op.ordinal()].sum();
+    }
+
+    /** @return total number of pixels visited by op */
+    public static long cellsVisited(Op op) {
+        return CELLS[op.ordinal()].sum();
+    }
+
+    /** @return largest BFS queue length seen in a single call of op */
+    public static long queueHighWater(Op op) {
+        return QUEUE_PEAK[op.ordinal()].get();
+    }
+
+    /** @return estimated total bytes allocated by op */
+    public static long bytesAllocated(Op op) {
+        return BYTES[op.ordinal()].sum();
+    }
+
+    /** @return a copy of the latency histogram of op (see BUCKETS) */
+    public static long[] latencyHistogram(Op op) {
+        long[] ans = new long[BUCKETS];
+        for (int b = 0; b < BUCKETS; b++) ans[b] = HISTOGRAM[op.ordinal()].get(b);
+        return ans;
+    }
+
+    /**
+     * Called at the start of an instrumented operation.
+     * @return a start timestamp to pass to record, or 0 when metrics are disabled
+     */
+    static long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Called at the end of an instrumented operation; callers skip it when start() returned 0.
+     * @param op the operation
+     * @param start the value returned by start()
+     * @param cells pixels visited
+     * @param queuePeak peak BFS queue length (0 for non-BFS operations)
+     * @param bytes estimated bytes allocated
+     */
+    static void record(Op op, long start, long cells, long queuePeak, long bytes) {
+        long nanos = System.nanoTime() - start;
+        int i = op.ordinal();
+        CALLS[i].increment();
+        NANOS[i].add(nanos);
+        CELLS[i].add(cells);
+        BYTES[i].add(bytes);
+        QUEUE_PEAK[i].accumulate(queuePeak);
+        HISTOGRAM[i].incrementAndGet(nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos));
+        MapOperationEvent e = new MapOperationEvent();
+        if (e.shouldCommit()) {
+            e.operation = op.name();
+            e.latency = nanos;
+            e.cells = cells;
+            e.queuePeak = queuePeak;
+            e.bytes = bytes;
+            e.commit();
+        }
+    }
+
+    private static LongAdder[] adders() {
+        LongAdder[] ans = new LongAdder[Op.values().length];
+        for (int i = 0; i < ans.length; i++) ans[i] = new LongAdder();
+        return ans;
+    }
+
+    /** JMX view of the static counters; every array is indexed like getOperations(). */
+    private static final class Bean implements MapMetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return MapMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean on) {
+            MapMetrics.setEnabled(on);
+        }
+
+        @Override
+        public String[] getOperations() {
+            String[] ans = new String[OPS];
+            for (Op op : Op.values()) ans[op.ordinal()] = op.name();
+            return ans;
+        }
+
+        @Override
+        public long[] getCallCounts() {
+            long[] ans = new long[OPS];
+            for (Op op : Op.values()) ans[op.ordinal()] = calls(op);
+            return ans;
+        }
+
+        @Override
+        public long[] getTotalNanos() {
+            long[] ans = new long[OPS];
+            for (Op op : Op.values()) ans[op.ordinal()] = totalNanos(op);
+            return ans;
+        }
+
+        @Override
+        public long[] getCellsVisited() {
+            long[] ans = new long[OPS];
+            for (Op op : Op.values()) ans[op.ordinal()] = cellsVisited(op);
+            return ans;
+        }
+
+        @Override
+        public long[] getQueueHighWater() {
+            long[] ans = new long[OPS];
+            for (Op op : Op.values()) ans[op.ordinal()] = queueHighWater(op);
+            return ans;
+        }
+
+        @Override
+        public long[] getBytesAllocated() {
+            long[] ans = new long[OPS];
+            for (Op op : Op.values()) ans[op.ordinal()] = bytesAllocated(op);
+            return ans;
+        }
+
+        @Override
+        public long[] latencyHistogram(String operation) {
+            return MapMetrics.latencyHistogram(Op.valueOf(operation));
+        }
+
+        @Override
+        public void reset() {
+            MapMetrics.reset();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * JMX management interface of MapMetrics, registered by MapMetrics.registerMBean().
+ *
+ * All array attributes are indexed like getOperations() (the names of MapMetrics.Op).
+ */
+public interface MapMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean on);
+
+    /** @return the operation names, in the order used by every array attribute */
+    String[] getOperations();
+
+    long[] getCallCounts();
+
+    long[] getTotalNanos();
+
+    long[] getCellsVisited();
+
+    long[] getQueueHighWater();
+
+    long[] getBytesAllocated();
+
+    /**
+     * @param operation an operation name from getOperations()
+     * @return the latency histogram of that operation; bucket i counts calls of [2^i, 2^(i+1)) nanoseconds
+     */
+    long[] latencyHistogram(String operation);
+
+    void reset();
+}
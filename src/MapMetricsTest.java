@@ -0,0 +1,53 @@
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MapMetricsTest {
+    @Test
+    void disabledRecordsNothing() {
+        MapMetrics.setEnabled(false);
+        MapMetrics.reset();
+        new Map(10, 10, 0).fill(new Index2D(0, 0), 1, false);
+        assertEquals(0, MapMetrics.calls(MapMetrics.Op.FILL));
+    }
+
+    @Test
+    void enabledRecordsCallsCellsAndQueue() {
+        MapMetrics.reset();
+        MapMetrics.setEnabled(true);
+        try {
+            Map m = new Map(10, 10, 0);
+            m.fill(new Index2D(0, 0), 1, false);
+            m.shortestPath(new Index2D(0, 0), new Index2D(9, 9), -1, false);
+            m.drawRect(new Index2D(0, 0), new Index2D(1, 1), 2);
+            m.rescale(2, 2);
+        } finally {
+            MapMetrics.setEnabled(false);
+        }
+        assertEquals(1, MapMetrics.calls(MapMetrics.Op.FILL));
+        assertEquals(100, MapMetrics.cellsVisited(MapMetrics.Op.FILL));
+        assertTrue(MapMetrics.queueHighWater(MapMetrics.Op.FILL) > 0);
+        assertEquals(1, MapMetrics.calls(MapMetrics.Op.SHORTEST_PATH));
+        assertEquals(4, MapMetrics.cellsVisited(MapMetrics.Op.DRAW_RECT));
+        assertEquals(1600, MapMetrics.bytesAllocated(MapMetrics.Op.RESCALE));
+        long histogramCalls = 0;
+        for (long c : MapMetrics.latencyHistogram(MapMetrics.Op.FILL)) histogramCalls += c;
+        assertEquals(1, histogramCalls);
+    }
+
+    @Test
+    void exposedThroughJmx() throws Exception {
+        MapMetrics.registerMBean();
+        MapMetrics.registerMBean();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(MapMetrics.OBJECT_NAME);
+        String[] ops = (String[]) server.getAttribute(name, "Operations");
+        assertEquals(MapMetrics.Op.values().length, ops.length);
+        assertEquals("FILL", ops[0]);
+        assertNotNull(server.getAttribute(name, "CallCounts"));
+    }
+}
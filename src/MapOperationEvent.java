@@ -0,0 +1,37 @@
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event emitted by MapMetrics for every instrumented Map operation while metrics are enabled.
+ * Enable "I2CS.MapOperation" in a recording to capture it.
+ */
+@Name("I2CS.MapOperation")
+@Label("Map Operation")
+@Category({"I2CS", "Map"})
+@Description("One call of an instrumented Map operation")
+@StackTrace(false)
+class MapOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Latency")
+    @Timespan(Timespan.NANOSECONDS)
+    long latency;
+
+    @Label("Pixels Visited")
+    long cells;
+
+    @Label("Queue Peak")
+    long queuePeak;
+
+    @Label("Bytes Allocated")
+    @DataAmount
+    long bytes;
+}
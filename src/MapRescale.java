@@ -0,0 +1,113 @@
+import java.util.Arrays;
+
+/**
+ * Resampling engine behind Map.rescale.
+ *
+ * Every destination column x covers the source columns [floor(x / sx), floor((x + 1) / sx)) and every
+ * destination row likewise, at least one source pixel each way (so upscaling repeats pixels). The bounds are
+ * computed once per axis into index tables; the per-pixel loops only read the tables, with no floating-point division.
+ * A mode decides how the covered block is reduced to one value.
+ *
+ * Design notes:
+ * - NEAREST takes the first pixel of the block, which is exactly the historical Math.floor(x / sx) sampling.
+ * - A downscale on both axes (sx <= 1 and sy <= 1) runs in place: block x is reduced into the first source
+ *   column of that block, whose rows are never read again once written, and the columns are then reused
+ *   (trimmed only when the height shrinks). Any other rescale allocates a new int[newW][newH].
+ * - Destination columns are independent (their blocks are disjoint), so both paths run in parallel bands
+ *   (MapFilter.bands) once the result has at least MapFilter.PARALLEL_THRESHOLD pixels.
+ *
+ * Usage example (coarse occupancy grid where any obstacle in a 4x4 block blocks the cell):
+ * map.rescale(0.25, 0.25, MapRescale.Mode.MAX);
+ */
+public final class MapRescale {
+
+    /**
+     * How a block of source pixels becomes one destination pixel: its first (top-left) pixel,
+     * the rounded average, the maximum, or the most frequent value (the smallest one on ties).
+     */
+    public enum Mode { NEAREST, AREA, MAX, MODE }
+
+    private MapRescale() {
+    }
+
+    /**
+     * Resample src (int[w][h]) to newW x newH. src may be modified and must not be used afterwards.
+     * @return the new int[newW][newH] buffer
+     */
+    static int[][] rescale(int[][] src, int newW, int newH, double sx, double sy, Mode mode, boolean par) {
+        int w = src.length, h = src[0].length;
+        int[] xs = bounds(w, newW, sx), ys = bounds(h, newH, sy);
+        boolean inPlace = sx <= 1 && sy <= 1;
+        int[][] dst = inPlace ? new int[newW][] : new int[newW][newH];
+        MapFilter.bands(newW, par, (from, to) -> {
+            PixelIntMap counts = mode == Mode.MODE ? new PixelIntMap() : null;
+            for (int x = from; x < to; x++) {
+                int x0 = xs[x], x1 = xs[newW + x];
+                int[] out = inPlace ? src[x0] : dst[x];
+                for (int y = 0; y < newH; y++) {
+                    int y0 = ys[y], y1 = ys[newH + y];
+                    int v;
+                    switch (mode) {
+                        case AREA: v = area(src, x0, x1, y0, y1); break;
+                        case MAX: v = max(src, x0, x1, y0, y1); break;
+                        case MODE: v = mostFrequent(src, x0, x1, y0, y1, counts); break;
+                        default: v = src[x0][y0];
+                    }
+                    out[y] = v;
+                }
+                if (inPlace) dst[x] = newH == h ? out : Arrays.copyOf(out, newH);
+            }
+        });
+        return dst;
+    }
+
+    /**
+     * Block bounds along one axis: block i is [t[i], t[newN + i]), starting at floor(i / s) clamped to the source
+     * and ending at floor((i + 1) / s), but at least one pixel long.
+     */
+    private static int[] bounds(int n, int newN, double s) {
+        int[] t = new int[2 * newN];
+        for (int i = 0; i < newN; i++) {
+            t[i] = Math.min(n - 1, Math.max(0, (int) Math.floor(i / s)));
+            t[newN + i] = Math.max(t[i] + 1, Math.min(n, (int) Math.floor((i + 1) / s)));
+        }
+        return t;
+    }
+
+    private static int area(int[][] src, int x0, int x1, int y0, int y1) {
+        long sum = 0;
+        for (int x = x0; x < x1; x++) {
+            int[] col = src[x];
+            for (int y = y0; y < y1; y++) sum += col[y];
+        }
+        long n = (long) (x1 - x0) * (y1 - y0);
+        return (int) Math.floorDiv(2 * sum + n, 2 * n);
+    }
+
+    private static int max(int[][] src, int x0, int x1, int y0, int y1) {
+        int v = Integer.MIN_VALUE;
+        for (int x = x0; x < x1; x++) {
+            int[] col = src[x];
+            for (int y = y0; y < y1; y++) if (col[y] > v) v = col[y];
+        }
+        return v;
+    }
+
+    private static int mostFrequent(int[][] src, int x0, int x1, int y0, int y1, PixelIntMap counts) {
+        counts.clear();
+        int best = 0, bestCount = 0;
+        for (int x = x0; x < x1; x++) {
+            int[] col = src[x];
+            for (int y = y0; y < y1; y++) {
+                int v = col[y];
+                int c = counts.get(v, 0, 0) + 1;
+                counts.put(v, 0, c);
+                if (c > bestCount || (c == bestCount && v < best)) {
+                    best = v;
+                    bestCount = c;
+                }
+            }
+        }
+        return best;
+    }
+}
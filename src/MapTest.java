@@ -276,4 +276,349 @@ class MapTest {
         dist = m.allDistance(start, 1, false);
         assertEquals(-1, dist.getPixel(4,0));
     }
-}
\ No newline at end of file
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void shortestPathWeightedAvoidsExpensiveCells() {
+        // a cheap detour around an expensive middle column
+        Map2D m = new Map(3,3,1);
+        m.setPixel(1,1,50);
+        m.setPixel(1,0,50);
+        Map mm = (Map) m;
+        Pixel2D[] path = mm.shortestPathWeighted(new Index2D(0,0), new Index2D(2,0), -1, false);
+        assertNotNull(path);
+        assertEquals(7, path.length);
+        assertEquals(new Index2D(1,2), path[3]);
+        // with a cost table the middle becomes cheap again
+        int[] costs = new int[51];
+        costs[1] = 5;
+        costs[50] = 1;
+        path = mm.shortestPathWeighted(new Index2D(0,0), new Index2D(2,0), costs, -1, false);
+        assertEquals(3, path.length);
+        // obstacle blocks the only route
+        Map line = new Map(5,1,1);
+        line.setPixel(2,0,9);
+        assertNull(line.shortestPathWeighted(new Index2D(0,0), new Index2D(4,0), 9, false));
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void allDistanceWeightedWorks() {
+        Map m = new Map(new int[][]{{1},{2},{3},{4}});
+        Map2D dist = m.allDistanceWeighted(new Index2D(0,0), -1, false);
+        assertEquals(0, dist.getPixel(0,0));
+        assertEquals(2, dist.getPixel(1,0));
+        assertEquals(9, dist.getPixel(3,0));
+        // cyclic wrap reaches the last cell directly
+        dist = m.allDistanceWeighted(new Index2D(0,0), -1, true);
+        assertEquals(4, dist.getPixel(3,0));
+        // large costs use the heap instead of the bucket queue
+        m.mul(100000);
+        dist = m.allDistanceWeighted(new Index2D(0,0), -1, false);
+        assertEquals(900000, dist.getPixel(3,0));
+        m.setPixel(1,0,-1);
+        dist = m.allDistanceWeighted(new Index2D(0,0), -1, false);
+        assertEquals(-1, dist.getPixel(2,0));
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void weightedCostsNearIntMaxDoNotOverflow() {
+        Map m = new Map(new int[][]{{0},{2000000000},{2000000000},{1}});
+        Map2D dist = m.allDistanceWeighted(new Index2D(0,0), -1, false);
+        assertEquals(2000000000, dist.getPixel(1,0));
+        assertEquals(Integer.MAX_VALUE, dist.getPixel(2,0));
+        assertEquals(Integer.MAX_VALUE, dist.getPixel(3,0));
+        Pixel2D[] path = m.shortestPathWeighted(new Index2D(0,0), new Index2D(3,0), -1, false);
+        assertEquals(4, path.length);
+        assertEquals(new Index2D(0,0), path[0]);
+        assertEquals(new Index2D(3,0), path[3]);
+        // the cheaper way round wins even when the direct way costs more than an int can hold
+        Map ring = new Map(new int[][]{{0},{Integer.MAX_VALUE},{Integer.MAX_VALUE},{1}});
+        assertEquals(2, ring.shortestPathWeighted(new Index2D(0,0), new Index2D(3,0), -1, true).length);
+        assertEquals(1, ring.allDistanceWeighted(new Index2D(0,0), -1, true).getPixel(3,0));
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void shortestPathsBatchMatchesSingleQueries() {
+        Map m = new Map(6,6,0);
+        m.drawLine(new Index2D(2,0), new Index2D(2,4), 1);
+        Pixel2D[] src = {new Index2D(0,0), new Index2D(5,5), new Index2D(0,0), new Index2D(2,2), new Index2D(0,0)};
+        Pixel2D[] dst = {new Index2D(5,0), new Index2D(0,0), new Index2D(0,0), new Index2D(3,3), new Index2D(1,5)};
+        Pixel2D[][] paths = m.shortestPaths(src, dst, 1, false);
+        assertEquals(src.length, paths.length);
+        for (int i = 0; i < src.length; i++) {
+            Pixel2D[] single = m.shortestPath(src[i], dst[i], 1, false);
+            if (single == null) {
+                assertNull(paths[i]);
+                continue;
+            }
+            assertEquals(single.length, paths[i].length);
+            assertEquals(src[i], paths[i][0]);
+            assertEquals(dst[i], paths[i][paths[i].length-1]);
+        }
+        assertNull(paths[3]); // source on an obstacle
+        assertThrows(RuntimeException.class, () -> m.shortestPaths(src, new Pixel2D[1], 1, false));
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void bfsCursorYieldsLayers() {
+        Map m = new Map(5,5,0);
+        BfsCursor c = m.bfs(new Index2D(2,2), 1, false, 1);
+        int count = 0, last = 0;
+        while (c.next()) {
+            assertTrue(c.getDistance() >= last);
+            last = c.getDistance();
+            count++;
+        }
+        assertEquals(5, count);
+        assertEquals(1, last);
+        // full drain matches allDistance
+        m.setPixel(1,1,1);
+        assertEquals(m.allDistance(new Index2D(0,0), 1, true), m.bfs(new Index2D(0,0), 1, true).toDistanceMap());
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void nearestStopsAtFirstMatch() {
+        Map m = new Map(50,50,0);
+        m.setPixel(40,40,7);
+        m.setPixel(3,4,7);
+        assertEquals(new Index2D(3,4), m.nearest(new Index2D(0,0), 7, 1, false));
+        assertNull(m.nearest(new Index2D(0,0), 8, 1, false));
+        BfsCursor c = m.bfs(new Index2D(0,0), 1, false);
+        Pixel2D p = c.find((x, y, v) -> x + y == 10);
+        assertEquals(10, c.getDistance());
+        assertEquals(10, p.getX() + p.getY());
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void hashCodeFollowsContent() {
+        Map a = new Map(70,40,0);
+        Map b = new Map(70,40,0);
+        assertEquals(a.hashCode(), b.hashCode());
+        a.setPixel(65,35,4);
+        assertNotEquals(a.contentHash(), b.contentHash());
+        assertNotEquals(a, b);
+        // incremental update must agree with a fresh computation
+        b.drawRect(new Index2D(65,35), new Index2D(65,35), 4);
+        assertEquals(a.contentHash(), b.contentHash());
+        assertEquals(a, b);
+        a.setPixel(65,35,0);
+        a.setPixel(65,35,4);
+        assertEquals(new Map(a.getMap()).contentHash(), a.contentHash());
+        a.fill(new Index2D(0,0), 2, false);
+        assertEquals(new Map(a.getMap()).contentHash(), a.contentHash());
+        assertNotEquals(new Map(3,3,0).hashCode(), new Map(9,1,0).hashCode());
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void diffTilesReportsChangedRegions() {
+        Map a = new Map(70,40,0);
+        Map b = new Map(a.getMap());
+        assertTrue(a.diffTiles(b).isEmpty());
+        b.setPixel(1,1,5);
+        b.drawLine(new Index2D(69,39), new Index2D(69,39), 5);
+        java.util.List<Pixel2D[]> diff = a.diffTiles(b);
+        assertEquals(2, diff.size());
+        assertEquals(new Index2D(0,0), diff.get(0)[0]);
+        assertEquals(new Index2D(31,31), diff.get(0)[1]);
+        assertEquals(new Index2D(64,32), diff.get(1)[0]);
+        assertEquals(new Index2D(69,39), diff.get(1)[1]);
+        assertThrows(RuntimeException.class, () -> a.diffTiles(new Map(3)));
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void windowedOperationsStayInside() {
+        Map m = new Map(10,10,0);
+        Pixel2D c1 = new Index2D(2,2), c2 = new Index2D(5,4);
+        assertEquals(12, m.fill(new Index2D(3,3), 1, c1, c2));
+        assertEquals(0, m.getPixel(6,3));
+        assertEquals(1, m.getPixel(5,4));
+        assertEquals(0, m.fill(new Index2D(0,0), 1, c1, c2));
+        // a wall splits the window, and the path may not go around it outside the window
+        Map w = new Map(10,10,0);
+        w.drawLine(new Index2D(4,0), new Index2D(4,5), 1);
+        Pixel2D a = new Index2D(2,2), b = new Index2D(6,2);
+        assertNull(w.shortestPath(a, b, 1, new Index2D(0,0), new Index2D(9,5)));
+        Pixel2D[] path = w.shortestPath(a, b, 1, new Index2D(0,0), new Index2D(9,6));
+        assertEquals(w.shortestPath(a, b, 1, false).length, path.length);
+        Map2D dist = w.allDistance(a, 1, new Index2D(1,1), new Index2D(3,3));
+        assertEquals(3, dist.getWidth());
+        assertEquals(3, dist.getHeight());
+        assertEquals(0, dist.getPixel(1,1));
+        assertEquals(2, dist.getPixel(0,0));
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void windowedMulAndOffsetAdd() {
+        Map m = new Map(6,6,2);
+        m.mul(3, new Index2D(0,0), new Index2D(1,1));
+        assertEquals(6, m.getPixel(1,1));
+        assertEquals(2, m.getPixel(2,2));
+        Map small = new Map(new int[][]{{1,2},{3,4}});
+        m.addMap2D(small, 4, 4);
+        assertEquals(3, m.getPixel(4,4));
+        assertEquals(6, m.getPixel(5,5));
+        // partially outside: only the overlapping pixel is added
+        m.addMap2D(small, -1, -1);
+        assertEquals(10, m.getPixel(0,0));
+        assertEquals(6, m.getPixel(1,0));
+        assertEquals(m, new Map(m.getMap()));
+        assertEquals(new Map(m.getMap()).contentHash(), m.contentHash());
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void offsetAddOfItselfReadsOriginalPixels() {
+        int[][] offsets = {{1,0},{0,1},{-1,0},{0,-1},{2,-1},{-1,3},{0,0}};
+        for (int[] o : offsets) {
+            Map m = new Map(7,5,0);
+            for (int x = 0; x < 7; x++) {
+                for (int y = 0; y < 5; y++) m.setPixel(x, y, 10 * x + y);
+            }
+            Map expected = new Map(m.getMap());
+            expected.addMap2D(new Map(m.getMap()), o[0], o[1]);
+            m.addMap2D(m, o[0], o[1]);
+            assertEquals(expected, m);
+        }
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void distanceTransformMatchesBruteForce() {
+        java.util.Random r = new java.util.Random(11);
+        for (int t = 0; t < 40; t++) {
+            int w = 1 + r.nextInt(9), h = 1 + r.nextInt(9);
+            boolean cyclic = t % 2 == 0;
+            Map m = new Map(w, h, 0);
+            for (int x = 0; x < w; x++) for (int y = 0; y < h; y++) if (r.nextInt(6) == 0) m.setPixel(x, y, 1);
+            Map2D d = m.distanceTransform(1, cyclic);
+            for (int x = 0; x < w; x++) {
+                for (int y = 0; y < h; y++) {
+                    int best = -1;
+                    for (int ox = 0; ox < w; ox++) {
+                        for (int oy = 0; oy < h; oy++) {
+                            if (m.getPixel(ox, oy) != 1) continue;
+                            int dx = Math.abs(ox - x), dy = Math.abs(oy - y);
+                            if (cyclic) { dx = Math.min(dx, w - dx); dy = Math.min(dy, h - dy); }
+                            int d2 = dx * dx + dy * dy;
+                            if (best < 0 || d2 < best) best = d2;
+                        }
+                    }
+                    assertEquals(best, d.getPixel(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void distanceTransformWraps() {
+        Map m = new Map(10, 4, 0);
+        m.setPixel(0, 0, 7);
+        Map2D flat = m.distanceTransform(7, false);
+        Map2D ring = m.distanceTransform(7, true);
+        assertEquals(0, flat.getPixel(0, 0));
+        assertEquals(81 + 9, flat.getPixel(9, 3));
+        assertEquals(1 + 1, ring.getPixel(9, 3));
+        Map2D none = new Map(3, 3, 0).distanceTransform(7, true);
+        assertEquals(-1, none.getPixel(1, 1));
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void rescaleModes() {
+        int[][] data = {{1, 1, 0, 9}, {2, 5, 0, 0}, {7, 7, 3, 3}, {7, 8, 3, 4}};
+        Map area = new Map(data), max = new Map(data), mode = new Map(data), nearest = new Map(data);
+        area.rescale(0.5, 0.5, MapRescale.Mode.AREA);
+        max.rescale(0.5, 0.5, MapRescale.Mode.MAX);
+        mode.rescale(0.5, 0.5, MapRescale.Mode.MODE);
+        nearest.rescale(0.5, 0.5, MapRescale.Mode.NEAREST);
+        assertEquals(new Map(new int[][]{{2, 2}, {7, 3}}), area);
+        assertEquals(new Map(new int[][]{{5, 9}, {8, 4}}), max);
+        assertEquals(new Map(new int[][]{{1, 0}, {7, 3}}), mode);
+        assertEquals(new Map(new int[][]{{1, 0}, {7, 3}}), nearest);
+        Map wide = new Map(data);
+        wide.rescale(0.5, 1, MapRescale.Mode.MAX);
+        assertEquals(2, wide.getWidth());
+        assertEquals(4, wide.getHeight());
+        assertEquals(9, wide.getPixel(0, 3));
+        assertEquals(8, wide.getPixel(1, 1));
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void rescaleNearestMatchesFloorSampling() {
+        java.util.Random r = new java.util.Random(5);
+        double[] scales = {0.3, 0.5, 1.0 / 3, 0.75, 1.7, 2.5};
+        for (double sx : scales) {
+            for (double sy : scales) {
+                int[][] data = new int[13][9];
+                for (int[] col : data) for (int y = 0; y < col.length; y++) col[y] = r.nextInt(100);
+                Map m = new Map(data);
+                m.rescale(sx, sy);
+                assertEquals(Math.max(1, (int) Math.round(13 * sx)), m.getWidth());
+                assertEquals(Math.max(1, (int) Math.round(9 * sy)), m.getHeight());
+                for (int x = 0; x < m.getWidth(); x++) {
+                    for (int y = 0; y < m.getHeight(); y++) {
+                        int srcX = Math.min(12, (int) Math.floor(x / sx)), srcY = Math.min(8, (int) Math.floor(y / sy));
+                        assertEquals(data[srcX][srcY], m.getPixel(x, y));
+                    }
+                }
+                assertEquals(new Map(m.getMap()).contentHash(), m.contentHash());
+            }
+        }
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void repairPathSplicesDetour() {
+        Map m = new Map(20, 20, 0);
+        Pixel2D a = new Index2D(0, 5), b = new Index2D(19, 5);
+        Pixel2D[] path = m.shortestPath(a, b, 1, false);
+        assertSame(path, m.repairPath(path, new Pixel2D[]{new Index2D(3, 3)}, 1, false));
+        Pixel2D wall = path[10];
+        m.drawRect(new Index2D(wall.getX(), wall.getY() - 1), new Index2D(wall.getX(), wall.getY() + 1), 1);
+        Pixel2D[] changed = {new Index2D(wall.getX(), wall.getY() - 1), wall, new Index2D(wall.getX(), wall.getY() + 1)};
+        Pixel2D[] fixed = m.repairPath(path, changed, 1, false);
+        assertEquals(a, fixed[0]);
+        assertEquals(b, fixed[fixed.length - 1]);
+        for (int i = 0; i < fixed.length; i++) {
+            assertNotEquals(1, m.getPixel(fixed[i]));
+            if (i > 0) assertEquals(1.0, fixed[i].distance2D(fixed[i - 1]), 1e-9);
+        }
+        assertEquals(m.shortestPath(a, b, 1, false).length, fixed.length);
+        assertArrayEquals(fixed, m.repairPath(path, null, 1, false));
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void repairPathFallsBackToFullSearch() {
+        Map m = new Map(200, 10, 0);
+        Pixel2D a = new Index2D(2, 5), b = new Index2D(197, 5);
+        Pixel2D[] path = m.shortestPath(a, b, 1, false);
+        // a wall across the path whose only way around starts far outside every local window
+        m.drawLine(new Index2D(100, 1), new Index2D(100, 9), 1);
+        m.drawLine(new Index2D(60, 1), new Index2D(140, 1), 1);
+        Pixel2D[] fixed = m.repairPath(path, null, 1, false);
+        assertEquals(m.shortestPath(a, b, 1, false).length, fixed.length);
+        boolean aroundTheTop = false;
+        for (Pixel2D p : fixed) {
+            assertNotEquals(1, m.getPixel(p));
+            if (p.getX() == 100 && p.getY() == 0) aroundTheTop = true;
+        }
+        assertTrue(aroundTheTop);
+        m.setPixel(100, 0, 1);
+        assertNull(m.repairPath(path, new Pixel2D[]{new Index2D(100, 0), new Index2D(100, 5)}, 1, false));
+        assertNull(m.repairPath(fixed, new Pixel2D[]{new Index2D(100, 0)}, 1, false));
+        m.setPixel(b, 1);
+        assertNull(m.repairPath(path, new Pixel2D[]{b}, 1, false));
+    }
+}
@@ -0,0 +1,167 @@
+import java.util.Arrays;
+
+/**
+ * A map from pixel coordinates (x,y) to int values, without boxing.
+ *
+ * Intended for sparse pixel data (features, visited sets, distances of an explored area) where a full
+ * width*height array would be wasteful and a HashMap of Index2D keys would allocate per entry.
+ *
+ * Design notes:
+ * - Open addressing with linear probing over packed long keys (see Pixels.pack), Fibonacci hashing,
+ *   and a load factor of at most 1/2. Removal uses backward-shift deletion, so there are no tombstones.
+ * - Any int coordinates are accepted, including negative ones.
+ */
+public class PixelIntMap {
+
+    /**
+     * Callback for forEach.
+     */
+    public interface Visitor {
+        void visit(int x, int y, int value);
+    }
+
+    private long[] keys;
+    private int[] vals;
+    private boolean[] used;
+    private int shift;
+    private int size;
+
+    /**
+     * Constructs an empty map.
+     */
+    public PixelIntMap() {
+        this(8);
+    }
+
+    /**
+     * Constructs an empty map sized to hold the expected number of entries without rehashing.
+     * @param expected expected number of entries
+     */
+    public PixelIntMap(int expected) {
+        int cap = 16;
+        while (cap < 2L * expected) cap <<= 1;
+        alloc(cap);
+    }
+
+    /** @return number of entries */
+    public int size() {
+        return size;
+    }
+
+    /** @return true if there are no entries */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return true if (x,y) has a value
+     */
+    public boolean containsKey(int x, int y) {
+        return find(Pixels.pack(x, y)) >= 0;
+    }
+
+    /**
+     * Read the value stored for (x,y).
+     * @param missing value returned when (x,y) has no entry
+     * @return the stored value or missing
+     */
+    public int get(int x, int y, int missing) {
+        int i = find(Pixels.pack(x, y));
+        return i < 0 ? missing : vals[i];
+    }
+
+    /**
+     * Store v for (x,y), replacing any previous value.
+     * @return true if (x,y) was not present before
+     */
+    public boolean put(int x, int y, int v) {
+        long key = Pixels.pack(x, y);
+        int mask = keys.length - 1;
+        int i = Pixels.slot(key, shift);
+        while (used[i]) {
+            if (keys[i] == key) {
+                vals[i] = v;
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        used[i] = true;
+        keys[i] = key;
+        vals[i] = v;
+        if (2 * ++size > keys.length) rehash(keys.length * 2);
+        return true;
+    }
+
+    /**
+     * Remove the entry for (x,y).
+     * @return true if an entry was removed
+     */
+    public boolean remove(int x, int y) {
+        int i = find(Pixels.pack(x, y));
+        if (i < 0) return false;
+        int mask = keys.length - 1;
+        /** backward-shift deletion: pull later entries of the probe run into the hole */
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (!used[j]) break;
+            int home = Pixels.slot(keys[j], shift);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                vals[i] = vals[j];
+                i = j;
+            }
+        }
+        used[i] = false;
+        size--;
+        return true;
+    }
+
+    /**
+     * Remove all entries (keeps the current capacity).
+     */
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    /**
+     * Visit every entry in unspecified order. The map must not be modified during the visit.
+     */
+    public void forEach(Visitor v) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) v.visit(Pixels.unpackX(keys[i]), Pixels.unpackY(keys[i]), vals[i]);
+        }
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        for (int i = Pixels.slot(key, shift); used[i]; i = (i + 1) & mask) {
+            if (keys[i] == key) return i;
+        }
+        return -1;
+    }
+
+    private void alloc(int cap) {
+        keys = new long[cap];
+        vals = new int[cap];
+        used = new boolean[cap];
+        shift = 64 - Integer.numberOfTrailingZeros(cap);
+    }
+
+    private void rehash(int cap) {
+        long[] ok = keys;
+        int[] ov = vals;
+        boolean[] ou = used;
+        alloc(cap);
+        int mask = cap - 1;
+        for (int k = 0; k < ok.length; k++) {
+            if (!ou[k]) continue;
+            int i = Pixels.slot(ok[k], shift);
+            while (used[i]) i = (i + 1) & mask;
+            used[i] = true;
+            keys[i] = ok[k];
+            vals[i] = ov[k];
+        }
+    }
+}
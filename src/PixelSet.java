@@ -0,0 +1,94 @@
+/**
+ * A set of pixel coordinates (x,y), without boxing.
+ *
+ * Backed by a PixelIntMap whose values are ignored, so it shares its open-addressing layout:
+ * about 13 bytes per slot at a load factor of at most 1/2, instead of an Index2D plus a HashMap node per entry.
+ */
+public class PixelSet {
+
+    /**
+     * Callback for forEach.
+     */
+    public interface Visitor {
+        void visit(int x, int y);
+    }
+
+    private final PixelIntMap table;
+
+    /**
+     * Constructs an empty set.
+     */
+    public PixelSet() {
+        table = new PixelIntMap();
+    }
+
+    /**
+     * Constructs an empty set sized to hold the expected number of pixels without rehashing.
+     * @param expected expected number of pixels
+     */
+    public PixelSet(int expected) {
+        table = new PixelIntMap(expected);
+    }
+
+    /** @return number of pixels in the set */
+    public int size() {
+        return table.size();
+    }
+
+    /** @return true if the set is empty */
+    public boolean isEmpty() {
+        return table.isEmpty();
+    }
+
+    /**
+     * @return true if (x,y) was not already in the set
+     */
+    public boolean add(int x, int y) {
+        return table.put(x, y, 0);
+    }
+
+    /**
+     * Add the coordinates of a Pixel2D.
+     * @return true if the pixel was not already in the set
+     * @throws RuntimeException if p is null
+     */
+    public boolean add(Pixel2D p) {
+        if (p == null) throw new RuntimeException("Null pixel");
+        return add(p.getX(), p.getY());
+    }
+
+    /**
+     * @return true if (x,y) is in the set
+     */
+    public boolean contains(int x, int y) {
+        return table.containsKey(x, y);
+    }
+
+    /**
+     * @return true if the coordinates of p are in the set; false for null
+     */
+    public boolean contains(Pixel2D p) {
+        return p != null && contains(p.getX(), p.getY());
+    }
+
+    /**
+     * @return true if (x,y) was in the set
+     */
+    public boolean remove(int x, int y) {
+        return table.remove(x, y);
+    }
+
+    /**
+     * Remove all pixels (keeps the current capacity).
+     */
+    public void clear() {
+        table.clear();
+    }
+
+    /**
+     * Visit every pixel in unspecified order. The set must not be modified during the visit.
+     */
+    public void forEach(Visitor v) {
+        table.forEach((x, y, ignored) -> v.visit(x, y));
+    }
+}
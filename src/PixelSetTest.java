@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PixelSetTest {
+    @Test
+    void testPackRoundTrip() {
+        int[] vals = {0, 1, -1, 12345, -98765, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        for (int x : vals) {
+            for (int y : vals) {
+                long p = Pixels.pack(x, y);
+                assertEquals(x, Pixels.unpackX(p));
+                assertEquals(y, Pixels.unpackY(p));
+            }
+        }
+        int i = Pixels.index(3, 4, 10);
+        assertEquals(3, Pixels.indexX(i, 10));
+        assertEquals(4, Pixels.indexY(i, 10));
+    }
+    @Test
+    void testSetAddContainsRemove() {
+        PixelSet set = new PixelSet();
+        assertTrue(set.add(1, 2));
+        assertFalse(set.add(1, 2));
+        assertTrue(set.add(new Index2D(-5, 7)));
+        assertTrue(set.contains(1, 2));
+        assertTrue(set.contains(new Index2D(-5, 7)));
+        assertFalse(set.contains(2, 1));
+        assertFalse(set.contains(null));
+        assertEquals(2, set.size());
+        assertTrue(set.remove(1, 2));
+        assertFalse(set.remove(1, 2));
+        assertFalse(set.contains(1, 2));
+        assertEquals(1, set.size());
+    }
+    @Test
+    void testMapGrowAndRemoveKeepsEntries() {
+        PixelIntMap m = new PixelIntMap();
+        for (int x = 0; x < 100; x++) {
+            for (int y = 0; y < 100; y++) {
+                m.put(x, y, x * 1000 + y);
+            }
+        }
+        assertEquals(10000, m.size());
+        for (int x = 0; x < 100; x += 2) {
+            for (int y = 0; y < 100; y++) {
+                assertTrue(m.remove(x, y));
+            }
+        }
+        assertEquals(5000, m.size());
+        for (int x = 0; x < 100; x++) {
+            for (int y = 0; y < 100; y++) {
+                int expected = (x % 2 == 0) ? -1 : x * 1000 + y;
+                assertEquals(expected, m.get(x, y, -1));
+            }
+        }
+        int[] sum = {0};
+        m.forEach((x, y, v) -> sum[0]++);
+        assertEquals(5000, sum[0]);
+        m.clear();
+        assertTrue(m.isEmpty());
+        assertFalse(m.containsKey(1, 1));
+    }
+}
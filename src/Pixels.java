@@ -0,0 +1,80 @@
+/**
+ * Static helpers for handling pixel coordinates as primitives instead of Pixel2D objects.
+ *
+ * Two encodings are provided:
+ * - pack/unpackX/unpackY: any (x,y) int pair as a single long (x in the high 32 bits, y in the low 32 bits).
+ *   This is the key format used by PixelSet and PixelIntMap.
+ * - index/indexX/indexY: a cell of a map with a known height as a single int (x * height + y), which is the
+ *   encoding the Map search algorithms use for their flat scratch arrays.
+ *
+ * The distance helpers work on raw coordinates, so callers do not need to allocate an Index2D to measure.
+ */
+public final class Pixels {
+
+    private Pixels() {
+    }
+
+    /**
+     * Pack an (x,y) pair into a single long.
+     * @param x x coordinate (any int)
+     * @param y y coordinate (any int)
+     * @return the packed coordinate
+     */
+    public static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /** @return the x coordinate of a value produced by pack */
+    public static int unpackX(long p) {
+        return (int) (p >> 32);
+    }
+
+    /** @return the y coordinate of a value produced by pack */
+    public static int unpackY(long p) {
+        return (int) p;
+    }
+
+    /**
+     * Encode a cell of a map with the given height as a single int.
+     * @param x x coordinate, 0 <= x < width
+     * @param y y coordinate, 0 <= y < height
+     * @param height the map height
+     * @return x * height + y
+     */
+    public static int index(int x, int y, int height) {
+        return x * height + y;
+    }
+
+    /** @return the x coordinate of a value produced by index */
+    public static int indexX(int index, int height) {
+        return index / height;
+    }
+
+    /** @return the y coordinate of a value produced by index */
+    public static int indexY(int index, int height) {
+        return index % height;
+    }
+
+    /**
+     * Squared Euclidean distance between (x1,y1) and (x2,y2), computed without overflow.
+     */
+    public static long squaredDistance(int x1, int y1, int x2, int y2) {
+        long dx = (long) x1 - x2;
+        long dy = (long) y1 - y2;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Manhattan (4-connected step) distance between (x1,y1) and (x2,y2).
+     */
+    public static long manhattanDistance(int x1, int y1, int x2, int y2) {
+        return Math.abs((long) x1 - x2) + Math.abs((long) y1 - y2);
+    }
+
+    /**
+     * Fibonacci hash of a packed coordinate into a table of 2^(64 - shift) slots (used by the open-addressing tables).
+     */
+    static int slot(long key, int shift) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+}
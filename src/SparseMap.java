@@ -0,0 +1,1204 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A sparse, chunked implementation of Map2D for huge, mostly uniform worlds (for example 1M x 1M).
+ *
+ * The map is split into square chunks of CHUNK x CHUNK pixels. A chunk that was never written has no storage
+ * and reads as the map's default value. A chunk is either dense (an int[CHUNK*CHUNK] buffer) or uniform
+ * (a single value, used when a whole chunk is painted at once). A write that makes a dense chunk uniform
+ * collapses it on the spot, and releases it when that value is the default.
+ *
+ * Design notes:
+ * - Chunks are indexed by their chunk coordinates in a PixelIntMap (chunk -> slot in a list), and the last
+ *   looked-up chunk is cached because most accesses are spatially coherent.
+ * - fill paints uniform and unallocated chunks as a whole and only floods dense chunks pixel by pixel; a fill
+ *   that covers most unallocated chunks switches the default value instead of allocating them.
+ * - shortestPath and allDistance search a contracted graph in which a free uniform chunk is represented by
+ *   its border ring (with across edges between opposite sides), so crossing open space costs per chunk rather
+ *   than per pixel. allDistance returns another SparseMap (default -1), so its memory is proportional to the
+ *   explored area.
+ * - Like Map, operations validate inputs and throw RuntimeException for invalid arguments.
+ *   getMap() materializes the full array and therefore only works for maps that fit in memory.
+ */
+public class SparseMap implements Map2D {
+
+    /** log2 of the chunk side */
+    static final int BITS = 6;
+    /** chunk side length in pixels */
+    static final int CHUNK = 1 << BITS;
+    private static final int MASK = CHUNK - 1;
+    private static final int[] DX = {1, -1, 0, 0};
+    private static final int[] DY = {0, 0, 1, -1};
+
+    private int width;
+    private int height;
+    private int def;
+    private final PixelIntMap index = new PixelIntMap();
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    /** sort buffer of recount */
+    private int[] scratch;
+
+    /** one-entry lookup cache: the chunk (or null) found for (cacheX, cacheY) */
+    private int cacheX = -1, cacheY = -1;
+    private Chunk cache;
+
+    /**
+     * Constructs a w*h sparse map where every pixel initially has the value v. No chunk is allocated.
+     * @param w the width; must be > 0
+     * @param h the height; must be > 0
+     * @param v the default value of every pixel
+     * @throws RuntimeException if width or height are not positive
+     */
+    public SparseMap(int w, int h, int v) {
+        init(w, h, v);
+    }
+
+    /**
+     * Constructs a sparse copy of the given 2D array (interpreted as int[width][height]), with default value 0.
+     * @param data a non-null, non-empty, rectangular 2D array to copy from
+     * @throws RuntimeException if the input is null, empty, ragged, or has zero height
+     */
+    public SparseMap(int[][] data) {
+        init(data);
+    }
+
+    /**
+     * Reset this map to w*h pixels of value v. Runs in constant time: all chunks are released.
+     * @throws RuntimeException for invalid dimensions
+     */
+    @Override
+    public void init(int w, int h, int v) {
+        if (w <= 0 || h <= 0) {
+            throw new RuntimeException("Invalid dimensions");
+        }
+        this.width = w;
+        this.height = h;
+        this.def = v;
+        this.index.clear();
+        this.chunks.clear();
+        invalidate();
+    }
+
+    /**
+     * Reset this map from a rectangular 2D array with default value 0; only chunks containing non-zero values
+     * are allocated.
+     * @throws RuntimeException if arr is null, empty, ragged, or has zero height
+     */
+    @Override
+    public void init(int[][] arr) {
+        if (arr == null || arr.length == 0) {
+            throw new RuntimeException("Array is null or empty");
+        }
+        int h = arr[0].length;
+        if (h == 0) throw new RuntimeException("Array has zero height");
+        for (int[] col : arr) {
+            if (col == null || col.length != h) throw new RuntimeException("Ragged array");
+        }
+        init(arr.length, h, 0);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (arr[x][y] != def) set(x, y, arr[x][y]);
+            }
+        }
+    }
+
+    /**
+     * Materialize the whole map as a new int[width][height] array.
+     * @throws RuntimeException if the map is too large to be materialized as an array
+     */
+    @Override
+    public int[][] getMap() {
+        if ((long) width * height > Integer.MAX_VALUE) throw new RuntimeException("Map too large to materialize");
+        int[][] ans = new int[width][height];
+        for (int[] col : ans) Arrays.fill(col, def);
+        for (Chunk c : chunks) {
+            int x0 = c.cx << BITS, y0 = c.cy << BITS;
+            int x1 = Math.min(width, x0 + CHUNK), y1 = Math.min(height, y0 + CHUNK);
+            for (int x = x0; x < x1; x++) {
+                for (int y = y0; y < y1; y++) ans[x][y] = c.get(x & MASK, y & MASK);
+            }
+        }
+        return ans;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the value of every pixel that lies in an unallocated chunk
+     */
+    public int getDefault() {
+        return def;
+    }
+
+    /**
+     * @return the number of allocated (dense or uniform) chunks
+     */
+    public int chunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * @throws RuntimeException if the coordinates are outside the map bounds
+     */
+    @Override
+    public int getPixel(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new RuntimeException("Pixel out of bounds");
+        }
+        return value(x, y);
+    }
+
+    @Override
+    public int getPixel(Pixel2D p) {
+        if (p == null) throw new RuntimeException("Null pixel");
+        return getPixel(p.getX(), p.getY());
+    }
+
+    /**
+     * @throws RuntimeException if the coordinates are outside the map bounds
+     */
+    @Override
+    public void setPixel(int x, int y, int v) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new RuntimeException("Pixel out of bounds");
+        }
+        set(x, y, v);
+    }
+
+    @Override
+    public void setPixel(Pixel2D p, int v) {
+        if (p == null) throw new RuntimeException("Null pixel");
+        setPixel(p.getX(), p.getY(), v);
+    }
+
+    @Override
+    public boolean isInside(Pixel2D p) {
+        if (p == null) return false;
+        return p.getX() >= 0 && p.getX() < width && p.getY() >= 0 && p.getY() < height;
+    }
+
+    @Override
+    public boolean sameDimensions(Map2D p) {
+        if (p == null) return false;
+        return width == p.getWidth() && height == p.getHeight();
+    }
+
+    /**
+     * Add another Map2D element-wise (in place); does nothing if the dimensions differ.
+     * When p is also a SparseMap only the chunks allocated in either map are visited.
+     */
+    @Override
+    public void addMap2D(Map2D p) {
+        if (!sameDimensions(p)) return;
+        if (!(p instanceof SparseMap)) {
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) set(x, y, value(x, y) + p.getPixel(x, y));
+            }
+            return;
+        }
+        SparseMap o = (SparseMap) p;
+        int oldDef = def;
+        PixelSet keys = new PixelSet();
+        for (Chunk c : chunks) keys.add(c.cx, c.cy);
+        for (Chunk c : o.chunks) keys.add(c.cx, c.cy);
+        /** compute the sums of the touched chunks first, then switch the default for everything else */
+        List<int[]> sums = new ArrayList<>();
+        keys.forEach((cx, cy) -> {
+            int[] sum = new int[CHUNK * CHUNK];
+            Chunk a = chunk(cx, cy), b = o.chunk(cx, cy);
+            for (int i = 0; i < sum.length; i++) {
+                sum[i] = (a == null ? oldDef : a.get(i)) + (b == null ? o.def : b.get(i));
+            }
+            sums.add(new int[]{cx, cy});
+            sums.add(sum);
+        });
+        init(width, height, oldDef + o.def);
+        for (int i = 0; i < sums.size(); i += 2) {
+            putDense(sums.get(i)[0], sums.get(i)[1], sums.get(i + 1));
+        }
+    }
+
+    /**
+     * Multiply every pixel by scalar, rounding to the nearest integer (in place).
+     * Only the default value and the allocated chunks are visited.
+     */
+    @Override
+    public void mul(double scalar) {
+        def = (int) Math.round(def * scalar);
+        for (int i = chunks.size() - 1; i >= 0; i--) {
+            Chunk c = chunks.get(i);
+            if (c.data == null) {
+                c.uniform = (int) Math.round(c.uniform * scalar);
+                if (c.uniform == def) drop(c);
+                continue;
+            }
+            for (int k = 0; k < c.data.length; k++) c.data[k] = (int) Math.round(c.data[k] * scalar);
+            recount(c);
+        }
+    }
+
+    /**
+     * Rescale with nearest-neighbor sampling, using the same formula as Map.rescale.
+     * Only the destination pixels whose source lies in an allocated chunk are written.
+     * @throws RuntimeException if either scale factor is not positive
+     */
+    @Override
+    public void rescale(double sx, double sy) {
+        if (sx <= 0 || sy <= 0) throw new RuntimeException("Scale must be positive");
+        int newW = Math.max(1, (int) Math.round(width * sx));
+        int newH = Math.max(1, (int) Math.round(height * sy));
+        SparseMap dst = new SparseMap(newW, newH, def);
+        for (Chunk c : chunks) {
+            int a = c.cx << BITS, b = Math.min(width, a + CHUNK) - 1;
+            int ay = c.cy << BITS, by = Math.min(height, ay + CHUNK) - 1;
+            int lo = Math.max(0, (int) Math.floor(a * sx) - 1);
+            int hi = b == width - 1 ? newW - 1 : Math.min(newW - 1, (int) Math.ceil((b + 1) * sx) + 1);
+            int loY = Math.max(0, (int) Math.floor(ay * sy) - 1);
+            int hiY = by == height - 1 ? newH - 1 : Math.min(newH - 1, (int) Math.ceil((by + 1) * sy) + 1);
+            for (int x = lo; x <= hi; x++) {
+                int srcX = Math.min(width - 1, Math.max(0, (int) Math.floor(x / sx)));
+                if (srcX < a || srcX > b) continue;
+                for (int y = loY; y <= hiY; y++) {
+                    int srcY = Math.min(height - 1, Math.max(0, (int) Math.floor(y / sy)));
+                    if (srcY < ay || srcY > by) continue;
+                    dst.set(x, y, c.get(srcX & MASK, srcY & MASK));
+                }
+            }
+        }
+        this.width = newW;
+        this.height = newH;
+        this.index.clear();
+        this.chunks.clear();
+        invalidate();
+        for (Chunk c : dst.chunks) {
+            index.put(c.cx, c.cy, chunks.size());
+            chunks.add(c);
+        }
+    }
+
+    /**
+     * Draw a filled circle; only the circle's bounding box is visited.
+     * @throws RuntimeException if center is null
+     */
+    @Override
+    public void drawCircle(Pixel2D center, double rad, int color) {
+        if (center == null) throw new RuntimeException("Center null");
+        if (rad < 0) return;
+        int cx = center.getX(), cy = center.getY();
+        int r = (int) Math.ceil(rad);
+        int x0 = (int) Math.max(0, (long) cx - r), x1 = (int) Math.min(width - 1, (long) cx + r);
+        int y0 = (int) Math.max(0, (long) cy - r), y1 = (int) Math.min(height - 1, (long) cy + r);
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                if (Math.sqrt(Pixels.squaredDistance(cx, cy, x, y)) <= rad) set(x, y, color);
+            }
+        }
+    }
+
+    /**
+     * Draw a straight line, with the same interpolation as Map.drawLine. Pixels outside the map are ignored.
+     * @throws RuntimeException if either endpoint is null
+     */
+    @Override
+    public void drawLine(Pixel2D p1, Pixel2D p2, int color) {
+        if (p1 == null || p2 == null) throw new RuntimeException("Null endpoint");
+        int x1 = p1.getX(), y1 = p1.getY();
+        int x2 = p2.getX(), y2 = p2.getY();
+        if (x1 == x2 && y1 == y2) {
+            if (isInside(p1)) set(x1, y1, color);
+            return;
+        }
+        int dx = Math.abs(x2 - x1);
+        int dy = Math.abs(y2 - y1);
+        if (dx >= dy) {
+            int sx = x1 < x2 ? 1 : -1;
+            for (int xi = x1; xi != x2 + sx; xi += sx) {
+                double t = (double) (xi - x1) / (double) (x2 - x1);
+                int yi = (int) Math.round(y1 + t * (y2 - y1));
+                if (xi >= 0 && xi < width && yi >= 0 && yi < height) set(xi, yi, color);
+            }
+        } else {
+            int sy = y1 < y2 ? 1 : -1;
+            for (int yi = y1; yi != y2 + sy; yi += sy) {
+                double t = (double) (yi - y1) / (double) (y2 - y1);
+                int xi = (int) Math.round(x1 + t * (x2 - x1));
+                if (xi >= 0 && xi < width && yi >= 0 && yi < height) set(xi, yi, color);
+            }
+        }
+    }
+
+    /**
+     * Draw a filled rectangle (inclusive, clipped to the map). Chunks that are completely covered
+     * become uniform chunks (or are released when color is the default value) without touching their pixels.
+     * @throws RuntimeException if either corner is null
+     */
+    @Override
+    public void drawRect(Pixel2D p1, Pixel2D p2, int color) {
+        if (p1 == null || p2 == null) throw new RuntimeException("Null endpoint");
+        int x1 = Math.max(0, Math.min(p1.getX(), p2.getX()));
+        int x2 = Math.min(width - 1, Math.max(p1.getX(), p2.getX()));
+        int y1 = Math.max(0, Math.min(p1.getY(), p2.getY()));
+        int y2 = Math.min(height - 1, Math.max(p1.getY(), p2.getY()));
+        for (int cx = x1 >> BITS; cx <= x2 >> BITS; cx++) {
+            for (int cy = y1 >> BITS; cy <= y2 >> BITS; cy++) {
+                int cx0 = cx << BITS, cy0 = cy << BITS;
+                int cx1 = Math.min(width, cx0 + CHUNK) - 1, cy1 = Math.min(height, cy0 + CHUNK) - 1;
+                if (x1 <= cx0 && x2 >= cx1 && y1 <= cy0 && y2 >= cy1) {
+                    setUniform(cx, cy, color);
+                    continue;
+                }
+                for (int x = Math.max(x1, cx0); x <= Math.min(x2, cx1); x++) {
+                    for (int y = Math.max(y1, cy0); y <= Math.min(y2, cy1); y++) set(x, y, color);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pixel-wise equality with any Map2D of the same dimensions. Two SparseMaps are compared chunk by chunk.
+     */
+    @Override
+    public boolean equals(Object ob) {
+        if (!(ob instanceof Map2D)) return false;
+        Map2D other = (Map2D) ob;
+        if (!sameDimensions(other)) return false;
+        if (!(ob instanceof SparseMap)) {
+            for (int x = 0; x < width; x++) {
+                for (int y = 0; y < height; y++) {
+                    if (value(x, y) != other.getPixel(x, y)) return false;
+                }
+            }
+            return true;
+        }
+        SparseMap o = (SparseMap) ob;
+        PixelSet keys = new PixelSet();
+        for (Chunk c : chunks) keys.add(c.cx, c.cy);
+        for (Chunk c : o.chunks) keys.add(c.cx, c.cy);
+        long total = (long) ((width + MASK) >> BITS) * ((height + MASK) >> BITS);
+        if (keys.size() < total && def != o.def) return false;
+        boolean[] same = {true};
+        keys.forEach((cx, cy) -> {
+            if (!same[0]) return;
+            int x0 = cx << BITS, y0 = cy << BITS;
+            int x1 = Math.min(width, x0 + CHUNK), y1 = Math.min(height, y0 + CHUNK);
+            for (int x = x0; x < x1 && same[0]; x++) {
+                for (int y = y0; y < y1; y++) {
+                    if (value(x, y) != o.value(x, y)) {
+                        same[0] = false;
+                        break;
+                    }
+                }
+            }
+        });
+        return same[0];
+    }
+
+    /**
+     * Hash code consistent with equals, also against Map: both are derived from the same content digest.
+     */
+    @Override
+    public int hashCode() {
+        long h = contentHash();
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * The same 64-bit digest as Map.contentHash for the same dimensions and pixels. The default value and the
+     * uniform chunks are summed in closed form (Map.blockHash), so only dense chunks visit their pixels.
+     * @return the content digest of this map
+     */
+    public long contentHash() {
+        long h = 31L * width + height + Map.blockHash(0, 0, width, height, def);
+        for (Chunk c : chunks) {
+            int x0 = c.cx << BITS, y0 = c.cy << BITS, x1 = x0 + spanX(c.cx), y1 = y0 + spanY(c.cy);
+            h -= Map.blockHash(x0, y0, x1, y1, def);
+            if (c.data == null) {
+                h += Map.blockHash(x0, y0, x1, y1, c.uniform);
+                continue;
+            }
+            for (int x = x0; x < x1; x++) h += Map.columnHash(x, y0, c.data, (x - x0) << BITS, y1 - y0);
+        }
+        return h;
+    }
+
+    /**
+     * Flood fill (4-way, optionally cyclic) with the same semantics as Map.fill.
+     * Uniform and unallocated chunks holding the original value are painted as a whole and the flood moves on
+     * to the neighboring chunks without visiting their pixels; only dense chunks are filled pixel by pixel.
+     * When the flood covers most unallocated chunks the default value is switched instead of allocating them
+     * (the few it missed get uniform chunks of the old value), so filling around an object in a huge empty
+     * world costs one bit per chunk and almost no chunk storage.
+     * @return the number of pixels changed (saturated at Integer.MAX_VALUE)
+     */
+    @Override
+    public int fill(Pixel2D xy, int new_v, boolean cyclic) {
+        if (xy == null || !isInside(xy)) return 0;
+        int orig = value(xy.getX(), xy.getY());
+        if (orig == new_v) return 0;
+        return new Flood(orig, new_v, cyclic).run(xy.getX(), xy.getY());
+    }
+
+    /**
+     * Shortest path with the same semantics as Map.shortestPath (the returned path has the same length).
+     * A uniform chunk without obstacles is crossed through its border ring only (see Search), so labels are
+     * kept for the explored pixels of dense chunks and for the borders of free chunks, not for their interior.
+     */
+    @Override
+    public Pixel2D[] shortestPath(Pixel2D p1, Pixel2D p2, int obsColor, boolean cyclic) {
+        if (p1 == null || p2 == null) return null;
+        if (!isInside(p1) || !isInside(p2)) return null;
+        if (getPixel(p1) == obsColor || getPixel(p2) == obsColor) return null;
+        PixelIntMap dist = new PixelIntMap(), via = new PixelIntMap();
+        Search search = new Search(obsColor, cyclic, new Labels() {
+            @Override
+            public int dist(int x, int y) {
+                return dist.get(x, y, -1);
+            }
+
+            @Override
+            public void set(int x, int y, int d, int how) {
+                dist.put(x, y, d);
+                via.put(x, y, how);
+            }
+        });
+        int sx = p1.getX(), sy = p1.getY(), gx = p2.getX(), gy = p2.getY();
+        if (search.run(sx, sy, gx, gy) < 0) return null;
+        List<Pixel2D> path = new ArrayList<>();
+        int x = gx, y = gy;
+        path.add(new Index2D(x, y));
+        if (search.goalInterior) {
+            if (search.bestVia < 0) {
+                walk(path, x, y, sx, sy);
+                return reversed(path);
+            }
+            int qx = Pixels.unpackX(search.bestVia), qy = Pixels.unpackY(search.bestVia);
+            walk(path, x, y, qx, qy);
+            x = qx;
+            y = qy;
+        }
+        while (true) {
+            int how = via.get(x, y, START);
+            if (how == START) break;
+            if (how == JUMP) {
+                walk(path, x, y, sx, sy);
+                break;
+            }
+            if (how < 4) {
+                x = Math.floorMod(x - DX[how], width);
+                y = Math.floorMod(y - DY[how], height);
+                path.add(new Index2D(x, y));
+                continue;
+            }
+            /** an across edge: the previous node is on the opposite side of the same chunk */
+            int x0 = x & ~MASK, y0 = y & ~MASK;
+            int px = how == ACROSS ? x0 : how == ACROSS + 1 ? x0 + spanX(x >> BITS) - 1 : x;
+            int py = how == ACROSS + 2 ? y0 : how == ACROSS + 3 ? y0 + spanY(y >> BITS) - 1 : y;
+            walk(path, x, y, px, py);
+            x = px;
+            y = py;
+        }
+        return reversed(path);
+    }
+
+    /**
+     * BFS distance map with the same semantics as Map.allDistance. The result is a SparseMap with default -1,
+     * so only chunks that were actually reached are allocated. The search itself only labels the border ring
+     * of free uniform chunks (see Search); their interior is then filled from the ring by a two-pass L1
+     * distance sweep, which is exact because the chunk has no obstacles.
+     */
+    @Override
+    public Map2D allDistance(Pixel2D start, int obsColor, boolean cyclic) {
+        SparseMap res = new SparseMap(width, height, -1);
+        if (start == null || !isInside(start)) return res;
+        Search search = new Search(obsColor, cyclic, new Labels() {
+            @Override
+            public int dist(int x, int y) {
+                return res.value(x, y);
+            }
+
+            @Override
+            public void set(int x, int y, int d, int how) {
+                res.set(x, y, d);
+            }
+        });
+        search.run(start.getX(), start.getY(), -1, -1);
+        for (int i = 0; i < res.chunks.size(); i++) {
+            Chunk rc = res.chunks.get(i);
+            if (rc.data != null && search.free(rc.cx, rc.cy)) res.sweep(rc, start.getX(), start.getY());
+        }
+        return res;
+    }
+
+    /**
+     * Collapse every dense chunk whose pixels all hold the same value into a uniform chunk (or release it when
+     * that value is the default). Writes already collapse the chunk they make uniform, so this is only needed
+     * after direct changes of the default value.
+     */
+    public void compact() {
+        for (int i = chunks.size() - 1; i >= 0; i--) {
+            Chunk c = chunks.get(i);
+            if (c.data == null) {
+                if (c.uniform == def) drop(c);
+            } else {
+                recount(c);
+            }
+        }
+    }
+
+    /** unchecked read of an in-bounds pixel */
+    private int value(int x, int y) {
+        Chunk c = chunk(x >> BITS, y >> BITS);
+        return c == null ? def : c.get(x & MASK, y & MASK);
+    }
+
+    /**
+     * Unchecked write of an in-bounds pixel; allocates or densifies the chunk as needed and collapses a dense
+     * chunk as soon as the write makes it uniform (releasing it when that value is the default).
+     */
+    private void set(int x, int y, int v) {
+        int cx = x >> BITS, cy = y >> BITS;
+        Chunk c = chunk(cx, cy);
+        if (c == null) {
+            if (v == def) return;
+            c = create(cx, cy);
+            densify(c, def);
+        } else if (c.data == null) {
+            if (v == c.uniform) return;
+            densify(c, c.uniform);
+        }
+        int i = ((x & MASK) << BITS) | (y & MASK);
+        int old = c.data[i];
+        if (old == v) return;
+        c.data[i] = v;
+        c.budget--;
+        if (old == c.ref) c.same--;
+        if (v == c.ref) {
+            if (++c.same == cellsIn(cx, cy)) setUniform(cx, cy, v);
+        } else if (c.same == 0 && c.budget <= 0) {
+            /** ref died out and the chunk may be uniform in another value: find the new majority */
+            recount(c);
+        }
+    }
+
+    /** turn a chunk into a dense chunk whose pixels all hold v */
+    private void densify(Chunk c, int v) {
+        c.data = new int[CHUNK * CHUNK];
+        Arrays.fill(c.data, v);
+        c.ref = v;
+        c.same = cellsIn(c.cx, c.cy);
+        c.budget = 0;
+    }
+
+    /** make a whole chunk hold v, releasing it when v is the default */
+    private void setUniform(int cx, int cy, int v) {
+        Chunk c = chunk(cx, cy);
+        if (v == def) {
+            if (c != null) drop(c);
+            return;
+        }
+        if (c == null) c = create(cx, cy);
+        c.data = null;
+        c.uniform = v;
+    }
+
+    /** install a dense chunk computed elsewhere, collapsing it if it is uniform */
+    private void putDense(int cx, int cy, int[] data) {
+        Chunk c = create(cx, cy);
+        c.data = data;
+        recount(c);
+    }
+
+    /**
+     * Recompute the majority value (ref) of a dense chunk and its count, and collapse the chunk if that covers
+     * every pixel. The chunk cannot become uniform in any value before budget = cells - count more writes,
+     * so set only rescans after ref died out and that many writes happened (amortized O(log CHUNK) per write).
+     */
+    private void recount(Chunk c) {
+        int x1 = spanX(c.cx), y1 = spanY(c.cy);
+        if (scratch == null) scratch = new int[CHUNK * CHUNK];
+        int n = 0;
+        for (int x = 0; x < x1; x++) {
+            System.arraycopy(c.data, x << BITS, scratch, n, y1);
+            n += y1;
+        }
+        Arrays.sort(scratch, 0, n);
+        int best = scratch[0], count = 0;
+        for (int i = 0, j; i < n; i = j) {
+            for (j = i + 1; j < n && scratch[j] == scratch[i]; j++) { }
+            if (j - i > count) {
+                count = j - i;
+                best = scratch[i];
+            }
+        }
+        c.ref = best;
+        c.same = count;
+        c.budget = n - count;
+        if (count == n) setUniform(c.cx, c.cy, best);
+    }
+
+    /**
+     * Fill the interior of a result chunk of allDistance (a free chunk of the searched map) from its exact ring
+     * values and the start pixel, if it lies inside. Without obstacles the L1 distance is exact after one
+     * forward (+x, +y) and one backward (-x, -y) sweep.
+     */
+    private void sweep(Chunk c, int sx, int sy) {
+        int w = spanX(c.cx), h = spanY(c.cy);
+        int[] d = c.data;
+        if (w < 3 || h < 3) return;
+        for (int lx = 1; lx < w - 1; lx++) Arrays.fill(d, (lx << BITS) + 1, (lx << BITS) + h - 1, Integer.MAX_VALUE - 1);
+        if (sx >> BITS == c.cx && sy >> BITS == c.cy) d[((sx & MASK) << BITS) | (sy & MASK)] = 0;
+        for (int lx = 1; lx < w - 1; lx++) {
+            for (int ly = 1; ly < h - 1; ly++) {
+                int i = (lx << BITS) | ly;
+                d[i] = Math.min(d[i], Math.min(d[i - CHUNK], d[i - 1]) + 1);
+            }
+        }
+        for (int lx = w - 2; lx > 0; lx--) {
+            for (int ly = h - 2; ly > 0; ly--) {
+                int i = (lx << BITS) | ly;
+                d[i] = Math.min(d[i], Math.min(d[i + CHUNK], d[i + 1]) + 1);
+            }
+        }
+        /** a cheap valid state instead of a full recount: the corner value and its exact count */
+        c.ref = d[0];
+        c.same = 0;
+        c.budget = 0;
+        for (int lx = 0; lx < w; lx++) {
+            for (int ly = 0; ly < h; ly++) if (d[(lx << BITS) | ly] == c.ref) c.same++;
+        }
+        if (c.same == w * h) setUniform(c.cx, c.cy, c.ref);
+    }
+
+    /** append the pixels of a staircase walk from (x, y) (excluded) to (tx, ty) inside one chunk */
+    private static void walk(List<Pixel2D> path, int x, int y, int tx, int ty) {
+        while (x != tx) {
+            x += x < tx ? 1 : -1;
+            path.add(new Index2D(x, y));
+        }
+        while (y != ty) {
+            y += y < ty ? 1 : -1;
+            path.add(new Index2D(x, y));
+        }
+    }
+
+    private static Pixel2D[] reversed(List<Pixel2D> path) {
+        Pixel2D[] ans = new Pixel2D[path.size()];
+        for (int i = 0; i < ans.length; i++) ans[i] = path.get(ans.length - 1 - i);
+        return ans;
+    }
+
+    /** in-bounds width of chunk column cx */
+    private int spanX(int cx) {
+        return Math.min(CHUNK, width - (cx << BITS));
+    }
+
+    /** in-bounds height of chunk row cy */
+    private int spanY(int cy) {
+        return Math.min(CHUNK, height - (cy << BITS));
+    }
+
+    /** number of in-bounds pixels of a chunk (edge chunks may be partial) */
+    private int cellsIn(int cx, int cy) {
+        return spanX(cx) * spanY(cy);
+    }
+
+    private Chunk chunk(int cx, int cy) {
+        if (cx != cacheX || cy != cacheY) {
+            int slot = index.get(cx, cy, -1);
+            cache = slot < 0 ? null : chunks.get(slot);
+            cacheX = cx;
+            cacheY = cy;
+        }
+        return cache;
+    }
+
+    private Chunk create(int cx, int cy) {
+        Chunk c = new Chunk(cx, cy);
+        index.put(cx, cy, chunks.size());
+        chunks.add(c);
+        invalidate();
+        return c;
+    }
+
+    /** remove a chunk by moving the last chunk into its slot */
+    private void drop(Chunk c) {
+        int slot = index.get(c.cx, c.cy, -1);
+        Chunk last = chunks.remove(chunks.size() - 1);
+        if (last != c) {
+            chunks.set(slot, last);
+            index.put(last.cx, last.cy, slot);
+        }
+        index.remove(c.cx, c.cy);
+        invalidate();
+    }
+
+    private void invalidate() {
+        cacheX = -1;
+        cacheY = -1;
+        cache = null;
+    }
+
+    /** A CHUNK x CHUNK block: dense when data != null, otherwise every pixel equals uniform. */
+    private static final class Chunk {
+        final int cx, cy;
+        int[] data;
+        int uniform;
+        /** dense chunks only: a reference value, how many in-bounds pixels hold it, and how many writes are left
+         * before the chunk could possibly become uniform in some other value (see recount) */
+        int ref, same, budget;
+
+        Chunk(int cx, int cy) {
+            this.cx = cx;
+            this.cy = cy;
+        }
+
+        int get(int lx, int ly) {
+            return data == null ? uniform : data[(lx << BITS) | ly];
+        }
+
+        int get(int i) {
+            return data == null ? uniform : data[i];
+        }
+    }
+
+    /**
+     * The chunk-level flood behind fill. Dense chunks are flooded pixel by pixel (pixels queue) and a uniform
+     * chunk holding orig is painted at once and queued as a whole (whole queue), to continue into its neighbors
+     * through their facing edges.
+     * Unallocated chunks hold orig only when orig is the default. They cannot be painted while the flood runs,
+     * so they are claimed in the closed bitset (which starts as the allocated chunks) by a scanline over the
+     * chunk grid: a seed claims the whole run of unclaimed chunks in its chunk column with word operations and
+     * seeds the unclaimed runs of the neighbor columns. finish() then resolves the claimed chunks.
+     */
+    private final class Flood {
+        final int orig, nv;
+        final boolean cyclic;
+        final int gw = (width + MASK) >> BITS, gh = (height + MASK) >> BITS;
+        final LongQueue pixels = new LongQueue(), whole = new LongQueue(), seeds = new LongQueue();
+        /** bit cx * gh + cy; only used when orig is the default value */
+        final ChunkBits allocated, closed;
+        long filled, absentCount;
+
+        Flood(int orig, int nv, boolean cyclic) {
+            this.orig = orig;
+            this.nv = nv;
+            this.cyclic = cyclic;
+            if (orig == def) {
+                allocated = new ChunkBits();
+                closed = new ChunkBits();
+                for (Chunk c : chunks) {
+                    long b = (long) c.cx * gh + c.cy;
+                    allocated.set(b, b + 1);
+                    closed.set(b, b + 1);
+                }
+            } else {
+                allocated = null;
+                closed = null;
+            }
+        }
+
+        int run(int x, int y) {
+            if (orig == def && chunks.isEmpty()) {
+                /** the whole map holds orig and is connected */
+                def = nv;
+                return (int) Math.min(Integer.MAX_VALUE, (long) width * height);
+            }
+            visit(x, y);
+            while (!pixels.isEmpty() || !whole.isEmpty() || !seeds.isEmpty()) {
+                while (!pixels.isEmpty()) {
+                    long p = pixels.pop();
+                    int px = Pixels.unpackX(p), py = Pixels.unpackY(p);
+                    for (int d = 0; d < 4; d++) {
+                        int nx = px + DX[d], ny = py + DY[d];
+                        if (cyclic) {
+                            if (nx < 0) nx = width - 1;
+                            if (nx >= width) nx = 0;
+                            if (ny < 0) ny = height - 1;
+                            if (ny >= height) ny = 0;
+                        }
+                        if (nx >= 0 && nx < width && ny >= 0 && ny < height) visit(nx, ny);
+                    }
+                }
+                if (!whole.isEmpty()) spread(whole.pop());
+                else if (!seeds.isEmpty()) claim(seeds.pop());
+            }
+            finish();
+            return (int) Math.min(Integer.MAX_VALUE, filled);
+        }
+
+        /** paint (x, y) if it holds orig: a single pixel of a dense chunk, the whole uniform chunk, or seed a run */
+        void visit(int x, int y) {
+            int cx = x >> BITS, cy = y >> BITS;
+            Chunk c = chunk(cx, cy);
+            if (c == null) {
+                if (closed != null && !closed.get((long) cx * gh + cy)) seeds.push(Pixels.pack(cx, cy));
+            } else if (c.data == null) {
+                if (c.uniform != orig) return;
+                setUniform(cx, cy, nv);
+                filled += cellsIn(cx, cy);
+                whole.push(Pixels.pack(cx, cy));
+            } else if (c.get(x & MASK, y & MASK) == orig) {
+                set(x, y, nv);
+                filled++;
+                pixels.push(Pixels.pack(x, y));
+            }
+        }
+
+        /** flood into chunk (cx, cy), entered in direction d, through its facing edge */
+        void enter(int cx, int cy, int d) {
+            Chunk c = chunk(cx, cy);
+            int x0 = cx << BITS, y0 = cy << BITS;
+            if (c == null || c.data == null) {
+                visit(x0, y0);
+            } else if (d < 2) {
+                int ex = d == 0 ? x0 : x0 + spanX(cx) - 1;
+                for (int y = y0; y < y0 + spanY(cy); y++) visit(ex, y);
+            } else {
+                int ey = d == 2 ? y0 : y0 + spanY(cy) - 1;
+                for (int x = x0; x < x0 + spanX(cx); x++) visit(x, ey);
+            }
+        }
+
+        /** continue from a whole painted chunk into its four neighbors */
+        void spread(long chunk) {
+            int cx = Pixels.unpackX(chunk), cy = Pixels.unpackY(chunk);
+            for (int d = 0; d < 4; d++) {
+                int ncx = cx + DX[d], ncy = cy + DY[d];
+                if (cyclic) {
+                    ncx = Math.floorMod(ncx, gw);
+                    ncy = Math.floorMod(ncy, gh);
+                }
+                if (ncx >= 0 && ncx < gw && ncy >= 0 && ncy < gh) enter(ncx, ncy, d);
+            }
+        }
+
+        /** claim the run of unclaimed unallocated chunks around a seed and continue from its sides and ends */
+        void claim(long seed) {
+            int cx = Pixels.unpackX(seed), cy = Pixels.unpackY(seed);
+            long base = (long) cx * gh;
+            if (closed.get(base + cy)) return;
+            int y0 = (int) (closed.previous(base + cy, base) + 1 - base);
+            int y1 = (int) (closed.next(base + cy, base + gh, true) - base) - 1;
+            closed.set(base + y0, base + y1 + 1);
+            absentCount += y1 - y0 + 1;
+            filled += spanX(cx) * (Math.min(height, (long) (y1 + 1) << BITS) - ((long) y0 << BITS));
+            for (int d = 0; d < 2; d++) {
+                int ncx = cx + DX[d];
+                if (cyclic) ncx = Math.floorMod(ncx, gw);
+                if (ncx < 0 || ncx >= gw) continue;
+                long from = (long) ncx * gh + y0, to = (long) ncx * gh + y1 + 1;
+                for (long b = closed.next(from, to, false); b < to; b = closed.next(closed.next(b, to, true), to, false)) {
+                    seeds.push(Pixels.pack(ncx, (int) (b - (long) ncx * gh)));
+                }
+                for (long b = allocated.next(from, to, true); b < to; b = allocated.next(b + 1, to, true)) {
+                    enter(ncx, (int) (b - (long) ncx * gh), d);
+                }
+            }
+            for (int d = 2; d < 4; d++) {
+                int ncy = d == 2 ? y1 + 1 : y0 - 1;
+                if (cyclic) ncy = Math.floorMod(ncy, gh);
+                if (ncy >= 0 && ncy < gh) enter(cx, ncy, d);
+            }
+        }
+
+        /**
+         * Paint the claimed unallocated chunks with the cheaper of two equivalent edits: allocate uniform chunks
+         * for the claimed ones, or switch the default to the new value and allocate uniform chunks holding the
+         * old default for the unclaimed ones. Filling every unallocated chunk allocates nothing.
+         */
+        void finish() {
+            if (absentCount == 0) return;
+            long total = (long) gw * gh;
+            long unclaimed = total - chunks.size() - absentCount;
+            if (absentCount <= unclaimed) {
+                for (long b = closed.next(0, total, true); b < total; b = closed.next(b + 1, total, true)) {
+                    if (!allocated.get(b)) create((int) (b / gh), (int) (b % gh)).uniform = nv;
+                }
+                return;
+            }
+            int old = def;
+            def = nv;
+            for (long b = closed.next(0, total, false); b < total; b = closed.next(b + 1, total, false)) {
+                create((int) (b / gh), (int) (b % gh)).uniform = old;
+            }
+            for (int i = chunks.size() - 1; i >= 0; i--) {
+                Chunk c = chunks.get(i);
+                if (c.data == null && c.uniform == def) drop(c);
+            }
+        }
+    }
+
+    /** how a Search label was reached: 0-3 a unit step in direction d, ACROSS + k an across edge, or a seed */
+    private static final int ACROSS = 4, START = 8, JUMP = 9;
+    /** Dial bucket count of Search: larger than any key increase */
+    private static final int RING = 4 * CHUNK;
+
+    /** Node labels of a Search: the best known distance of a pixel (-1 if none) and how it was reached. */
+    private interface Labels {
+        int dist(int x, int y);
+
+        void set(int x, int y, int d, int how);
+    }
+
+    /**
+     * The chunk-level search behind shortestPath and allDistance: A* (plain Dijkstra when there is no goal) on a
+     * contracted graph.
+     * A chunk is free when it is uniform (or unallocated) and not an obstacle. Inside a free chunk only the
+     * border ring is labeled: besides the unit steps along the ring, every ring pixel has an across edge to the
+     * opposite side of the chunk (cost span - 1), which keeps ring-to-ring distances equal to their Manhattan
+     * distance. The passable pixels of every other chunk are plain BFS nodes. A start inside a free chunk seeds
+     * its ring with Manhattan distances (JUMP), and a goal inside a free chunk is reached from its ring.
+     *
+     * The heuristic is the (wrapped, when cyclic) Manhattan distance to the goal, which is consistent for every
+     * edge above. Keys are kept in a Dial bucket queue of RING buckets: a seed or an edge raises the key by at
+     * most 4 * CHUNK - 4. Buckets are popped as stacks, so among equal keys the most recent (deepest) node is
+     * expanded first and a search across open space follows one staircase instead of the whole rectangle.
+     */
+    private final class Search {
+        final int obs;
+        final boolean cyclic;
+        final Labels labels;
+        final LongQueue[] buckets = new LongQueue[RING];
+        int size, gx = -1, gy = -1;
+        boolean startInterior, goalInterior;
+        /** for an interior goal: the best distance found and the ring pixel it came through (-1 if direct) */
+        int best = Integer.MAX_VALUE;
+        long bestVia = -1;
+
+        Search(int obs, boolean cyclic, Labels labels) {
+            this.obs = obs;
+            this.cyclic = cyclic;
+            this.labels = labels;
+        }
+
+        boolean free(int cx, int cy) {
+            Chunk c = chunk(cx, cy);
+            if (c == null) return def != obs;
+            return c.data == null && c.uniform != obs;
+        }
+
+        /** true if (x, y) is not on the border ring of its chunk */
+        boolean interior(int x, int y) {
+            int lx = x & MASK, ly = y & MASK;
+            return lx > 0 && ly > 0 && lx < spanX(x >> BITS) - 1 && ly < spanY(y >> BITS) - 1;
+        }
+
+        /**
+         * Search from (sx, sy). With gx < 0 there is no goal and every reachable node is labeled.
+         * @return the distance to (gx, gy), or -1 if it is unreachable (or there is no goal)
+         */
+        int run(int sx, int sy, int gx, int gy) {
+            this.gx = gx;
+            this.gy = gy;
+            startInterior = free(sx >> BITS, sy >> BITS) && interior(sx, sy);
+            goalInterior = gx >= 0 && free(gx >> BITS, gy >> BITS) && interior(gx, gy);
+            int gcx = gx >> BITS, gcy = gy >> BITS;
+            if (goalInterior && startInterior && sx >> BITS == gcx && sy >> BITS == gcy) {
+                best = Math.abs(sx - gx) + Math.abs(sy - gy);
+            }
+            if (startInterior) {
+                int x0 = sx & ~MASK, y0 = sy & ~MASK, x1 = x0 + spanX(sx >> BITS) - 1, y1 = y0 + spanY(sy >> BITS) - 1;
+                for (int qx = x0; qx <= x1; qx++) {
+                    relax(qx, y0, Math.abs(qx - sx) + (sy - y0), JUMP);
+                    relax(qx, y1, Math.abs(qx - sx) + (y1 - sy), JUMP);
+                }
+                for (int qy = y0 + 1; qy < y1; qy++) {
+                    relax(x0, qy, (sx - x0) + Math.abs(qy - sy), JUMP);
+                    relax(x1, qy, (x1 - sx) + Math.abs(qy - sy), JUMP);
+                }
+            } else {
+                relax(sx, sy, 0, START);
+            }
+            for (int key = heuristic(sx, sy); size > 0 && key < best; key++) {
+                LongQueue b = buckets[key % RING];
+                while (b != null && !b.isEmpty()) {
+                    long p = b.popLast();
+                    size--;
+                    int x = Pixels.unpackX(p), y = Pixels.unpackY(p);
+                    int d = labels.dist(x, y);
+                    if (d + heuristic(x, y) != key) continue;
+                    if (x == gx && y == gy) return d;
+                    if (goalInterior && x >> BITS == gcx && y >> BITS == gcy) {
+                        int via = d + Math.abs(x - gx) + Math.abs(y - gy);
+                        if (via < best) {
+                            best = via;
+                            bestVia = p;
+                        }
+                        /** no key is below the current one, so nothing can beat it */
+                        if (best == key) return best;
+                    }
+                    expand(x, y, d);
+                }
+            }
+            return best == Integer.MAX_VALUE ? -1 : best;
+        }
+
+        private int heuristic(int x, int y) {
+            if (gx < 0) return 0;
+            int dx = Math.abs(x - gx), dy = Math.abs(y - gy);
+            if (cyclic) {
+                dx = Math.min(dx, width - dx);
+                dy = Math.min(dy, height - dy);
+            }
+            return dx + dy;
+        }
+
+        private void expand(int x, int y, int d) {
+            for (int k = 0; k < 4; k++) {
+                int nx = x + DX[k], ny = y + DY[k];
+                if (cyclic) {
+                    if (nx < 0) nx = width - 1;
+                    if (nx >= width) nx = 0;
+                    if (ny < 0) ny = height - 1;
+                    if (ny >= height) ny = 0;
+                }
+                if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+                if (free(nx >> BITS, ny >> BITS)) {
+                    if (interior(nx, ny)) continue;
+                } else if (value(nx, ny) == obs) {
+                    continue;
+                }
+                relax(nx, ny, d + 1, k);
+            }
+            int cx = x >> BITS, cy = y >> BITS;
+            if (!free(cx, cy)) return;
+            int x0 = cx << BITS, y0 = cy << BITS, w = spanX(cx), h = spanY(cy);
+            if (w > 2) {
+                if (x == x0) relax(x0 + w - 1, y, d + w - 1, ACROSS);
+                else if (x == x0 + w - 1) relax(x0, y, d + w - 1, ACROSS + 1);
+            }
+            if (h > 2) {
+                if (y == y0) relax(x, y0 + h - 1, d + h - 1, ACROSS + 2);
+                else if (y == y0 + h - 1) relax(x, y0, d + h - 1, ACROSS + 3);
+            }
+        }
+
+        private void relax(int x, int y, int d, int how) {
+            int old = labels.dist(x, y);
+            if (old >= 0 && old <= d) return;
+            labels.set(x, y, d, how);
+            int key = (d + heuristic(x, y)) % RING;
+            if (buckets[key] == null) buckets[key] = new LongQueue();
+            buckets[key].push(Pixels.pack(x, y));
+            size++;
+        }
+    }
+
+    /**
+     * A bitset over long indexes, stored in pages that are allocated on first write, so that the untouched
+     * parts of a huge chunk grid cost nothing. The scans work a word at a time.
+     */
+    private static final class ChunkBits {
+        private static final int PAGE_BITS = 18;
+        private static final int WORDS = 1 << (PAGE_BITS - 6);
+        private final PixelIntMap slots = new PixelIntMap();
+        private final List<long[]> pages = new ArrayList<>();
+        private long lastPage = -1;
+        private long[] last;
+
+        boolean get(long b) {
+            long[] page = page(b >>> PAGE_BITS, false);
+            return page != null && (page[(int) (b >>> 6) & (WORDS - 1)] & (1L << b)) != 0;
+        }
+
+        /** set the bits [from, to) */
+        void set(long from, long to) {
+            while (from < to) {
+                long[] page = page(from >>> PAGE_BITS, true);
+                long word = from & ~63L, end = Math.min(to, word + 64);
+                page[(int) (from >>> 6) & (WORDS - 1)] |= (-1L << from) & (-1L >>> (64 - (end - word)));
+                from = end;
+            }
+        }
+
+        /** @return the first bit in [from, to) equal to value, or to if there is none */
+        long next(long from, long to, boolean value) {
+            while (from < to) {
+                long[] page = page(from >>> PAGE_BITS, false);
+                if (page == null) {
+                    if (!value) return from;
+                    from = ((from >>> PAGE_BITS) + 1) << PAGE_BITS;
+                    continue;
+                }
+                long word = page[(int) (from >>> 6) & (WORDS - 1)];
+                word = (value ? word : ~word) & (-1L << from);
+                if (word != 0) return Math.min(to, (from & ~63L) + Long.numberOfTrailingZeros(word));
+                from = (from & ~63L) + 64;
+            }
+            return to;
+        }
+
+        /** @return the last set bit in [lo, from], or lo - 1 if there is none */
+        long previous(long from, long lo) {
+            while (from >= lo) {
+                long[] page = page(from >>> PAGE_BITS, false);
+                if (page == null) {
+                    from = ((from >>> PAGE_BITS) << PAGE_BITS) - 1;
+                    continue;
+                }
+                long word = page[(int) (from >>> 6) & (WORDS - 1)] & (-1L >>> (63 - (from & 63)));
+                if (word != 0) return Math.max(lo - 1, (from & ~63L) + 63 - Long.numberOfLeadingZeros(word));
+                from = (from & ~63L) - 1;
+            }
+            return lo - 1;
+        }
+
+        private long[] page(long p, boolean create) {
+            if (p != lastPage || (last == null && create)) {
+                int slot = slots.get((int) (p >>> 16), (int) (p & 0xffff), -1);
+                if (slot < 0 && create) {
+                    slot = pages.size();
+                    pages.add(new long[WORDS]);
+                    slots.put((int) (p >>> 16), (int) (p & 0xffff), slot);
+                }
+                lastPage = p;
+                last = slot < 0 ? null : pages.get(slot);
+            }
+            return last;
+        }
+    }
+
+    /** Growable FIFO of packed coordinates that reuses its consumed prefix before growing. */
+    private static final class LongQueue {
+        private long[] buf = new long[64];
+        private int head, tail;
+
+        void push(long v) {
+            if (tail == buf.length) {
+                if (head > buf.length / 2) {
+                    System.arraycopy(buf, head, buf, 0, tail - head);
+                } else {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                    System.arraycopy(buf, head, buf, 0, tail - head);
+                }
+                tail -= head;
+                head = 0;
+            }
+            buf[tail++] = v;
+        }
+
+        long pop() {
+            return buf[head++];
+        }
+
+        /** remove the most recently pushed element instead (stack order) */
+        long popLast() {
+            return buf[--tail];
+        }
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.Random;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SparseMapTest {
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void hugeMapIsLazy() {
+        SparseMap m = new SparseMap(1000000, 1000000, 0);
+        assertEquals(0, m.getPixel(999999, 999999));
+        m.setPixel(123456, 654321, 5);
+        assertEquals(5, m.getPixel(123456, 654321));
+        assertEquals(1, m.chunkCount());
+        m.setPixel(123456, 654321, 0);
+        assertEquals(0, m.chunkCount());
+        assertThrows(RuntimeException.class, () -> m.getPixel(1000000, 0));
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void fillAndSearchInHugeMap() {
+        SparseMap m = new SparseMap(1000000, 1000000, 0);
+        // a walled 200x200 room
+        Pixel2D a = new Index2D(500000, 500000);
+        Pixel2D b = new Index2D(500201, 500201);
+        m.drawRect(a, b, 1);
+        m.drawRect(new Index2D(500001, 500001), new Index2D(500200, 500200), 0);
+        assertEquals(40000, m.fill(new Index2D(500100, 500100), 7, false));
+        assertEquals(7, m.getPixel(500001, 500200));
+        assertEquals(0, m.getPixel(500202, 500202));
+        Pixel2D[] path = m.shortestPath(new Index2D(500001, 500001), new Index2D(500010, 500001), 1, false);
+        assertEquals(10, path.length);
+        Map2D dist = m.allDistance(new Index2D(500001, 500001), 1, false);
+        assertEquals(398, dist.getPixel(500200, 500200));
+        assertEquals(-1, dist.getPixel(0, 0));
+    }
+
+    @Test
+    @Timeout(value = 2000, unit = MILLISECONDS)
+    void matchesDenseMap() {
+        Random r = new Random(7);
+        for (int t = 0; t < 20; t++) {
+            int w = 1 + r.nextInt(150), h = 1 + r.nextInt(150);
+            Map dense = new Map(w, h, 0);
+            SparseMap sparse = new SparseMap(w, h, 0);
+            for (int i = 0; i < 6; i++) {
+                Pixel2D p1 = new Index2D(r.nextInt(w), r.nextInt(h));
+                Pixel2D p2 = new Index2D(r.nextInt(w), r.nextInt(h));
+                int c = r.nextInt(3);
+                switch (i % 3) {
+                    case 0: dense.drawRect(p1, p2, c); sparse.drawRect(p1, p2, c); break;
+                    case 1: dense.drawLine(p1, p2, c); sparse.drawLine(p1, p2, c); break;
+                    default:
+                        double rad = r.nextDouble() * 40;
+                        dense.drawCircle(p1, rad, c);
+                        sparse.drawCircle(p1, rad, c);
+                }
+            }
+            assertEquals(dense, sparse);
+            assertEquals(sparse, dense);
+            assertEquals(dense.hashCode(), sparse.hashCode());
+            Pixel2D s = new Index2D(r.nextInt(w), r.nextInt(h));
+            Pixel2D g = new Index2D(r.nextInt(w), r.nextInt(h));
+            boolean cyclic = r.nextBoolean();
+            Pixel2D[] pd = dense.shortestPath(s, g, 1, cyclic);
+            Pixel2D[] ps = sparse.shortestPath(s, g, 1, cyclic);
+            assertEquals(pd == null ? -1 : pd.length, ps == null ? -1 : ps.length);
+            assertEquals(dense.allDistance(s, 1, cyclic), sparse.allDistance(s, 1, cyclic));
+            assertEquals(dense.fill(s, 9, cyclic), sparse.fill(s, 9, cyclic));
+            assertEquals(dense, sparse);
+            assertEquals(dense.contentHash(), sparse.contentHash());
+            dense.mul(2);
+            sparse.mul(2);
+            dense.addMap2D(new Map(w, h, 1));
+            SparseMap one = new SparseMap(w, h, 1);
+            sparse.addMap2D(one);
+            assertEquals(dense, sparse);
+            double sx = 0.3 + r.nextDouble() * 2, sy = 0.3 + r.nextDouble() * 2;
+            dense.rescale(sx, sy);
+            sparse.rescale(sx, sy);
+            assertEquals(dense, sparse);
+        }
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void compactCollapsesUniformChunks() {
+        SparseMap m = new SparseMap(128, 128, 0);
+        for (int x = 0; x < 64; x++) {
+            for (int y = 0; y < 64; y++) m.setPixel(x, y, 3);
+        }
+        assertEquals(1, m.chunkCount());
+        m.compact();
+        assertEquals(1, m.chunkCount());
+        assertEquals(3, m.getPixel(10, 10));
+        m.drawRect(new Index2D(0, 0), new Index2D(127, 127), 0);
+        assertEquals(0, m.chunkCount());
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void fillAroundRoomSwitchesDefault() {
+        SparseMap m = new SparseMap(100000, 100000, 0);
+        m.drawRect(new Index2D(100, 100), new Index2D(300, 300), 1);
+        m.drawRect(new Index2D(101, 101), new Index2D(299, 299), 0);
+        assertEquals(12, m.chunkCount());
+        assertEquals(Integer.MAX_VALUE, m.fill(new Index2D(99999, 0), 2, true));
+        assertEquals(2, m.getDefault());
+        // only the four chunks inside the room keep the old default
+        assertEquals(16, m.chunkCount());
+        assertEquals(2, m.getPixel(50000, 50000));
+        assertEquals(1, m.getPixel(100, 100));
+        assertEquals(0, m.getPixel(200, 200));
+        assertEquals(Integer.MAX_VALUE, m.fill(new Index2D(0, 0), 0, false));
+        assertEquals(0, m.getDefault());
+        assertEquals(12, m.chunkCount());
+        SparseMap same = new SparseMap(100000, 100000, 0);
+        same.drawRect(new Index2D(100, 100), new Index2D(300, 300), 1);
+        same.drawRect(new Index2D(101, 101), new Index2D(299, 299), 0);
+        assertEquals(same, m);
+        assertEquals(same.hashCode(), m.hashCode());
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void writesCollapseUniformChunks() {
+        SparseMap m = new SparseMap(128, 64, 0);
+        for (int x = 0; x < 64; x++) {
+            for (int y = 0; y < 64; y++) m.setPixel(x, y, (x + y) % 2 == 0 ? 5 : 6);
+        }
+        for (int x = 0; x < 64; x++) {
+            for (int y = 0; y < 64; y++) m.setPixel(x, y, 5);
+        }
+        assertEquals(1, m.chunkCount());
+        // switching the default to 5 releases the first chunk only if it collapsed to a uniform chunk
+        assertEquals(64 * 64, m.fill(new Index2D(100, 10), 5, false));
+        assertEquals(5, m.getDefault());
+        assertEquals(0, m.chunkCount());
+    }
+
+    @Test
+    @Timeout(value = 300, unit = MILLISECONDS)
+    void searchCrossesOpenSpace() {
+        SparseMap m = new SparseMap(1000000, 1000000, 0);
+        Pixel2D[] path = m.shortestPath(new Index2D(10, 10), new Index2D(20010, 30010), 1, false);
+        assertEquals(50001, path.length);
+        m.drawLine(new Index2D(300, 0), new Index2D(300, 500), 1);
+        Pixel2D s = new Index2D(10, 10), g = new Index2D(610, 10);
+        path = m.shortestPath(s, g, 1, false);
+        assertEquals(1583, path.length);
+        assertEquals(s, path[0]);
+        assertEquals(g, path[path.length - 1]);
+        for (int i = 1; i < path.length; i++) {
+            assertEquals(1, Math.abs(path[i].getX() - path[i - 1].getX()) + Math.abs(path[i].getY() - path[i - 1].getY()));
+            assertNotEquals(1, m.getPixel(path[i]));
+        }
+    }
+}
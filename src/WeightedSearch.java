@@ -0,0 +1,246 @@
+import java.util.Arrays;
+
+/**
+ * Weighted (Dijkstra) search over a Map raster, used by Map.shortestPathWeighted and Map.allDistanceWeighted.
+ *
+ * The cost of stepping into a cell is the cell value itself, or costs[value] when a cost lookup table is given.
+ * Cells equal to obsColor, cells with a negative cost, and (with a table) values outside the table are
+ * untraversable. The start cell's own cost is never counted, so a path's cost is the sum of the cells it enters.
+ *
+ * Design notes:
+ * - Cells are encoded as a single int (x * height + y); dist (long) and parent are flat arrays of size width*height.
+ *   Distances are kept as long: a path may enter up to width*height cells of cost up to Integer.MAX_VALUE each,
+ *   which cannot overflow a long.
+ * - When the largest step cost is small a Dial bucket queue is used (O(1) push/pop), otherwise a binary heap
+ *   over parallel long key / int cell arrays. Both grow by doubling, so no allocation happens per visited cell.
+ * - Stale queue entries are skipped lazily by comparing their key against dist[cell].
+ */
+final class WeightedSearch {
+
+    /** largest step cost for which the Dial bucket queue is preferred over the binary heap */
+    static final int DIAL_LIMIT = 1 << 12;
+
+    private final int[][] map;
+    private final int width;
+    private final int height;
+    private final int[] costs;
+    private final int obsColor;
+    private final boolean cyclic;
+    final long[] dist;
+    final int[] parent;
+
+    /**
+     * @param map the raster to search, as int[width][height] (read only)
+     * @param costs optional cost lookup table indexed by pixel value; null means the pixel value is the cost
+     * @param obsColor pixel value treated as an obstacle
+     * @param cyclic whether neighbors wrap around the borders
+     */
+    WeightedSearch(int[][] map, int[] costs, int obsColor, boolean cyclic) {
+        this.map = map;
+        this.width = map.length;
+        this.height = map[0].length;
+        this.costs = costs;
+        this.obsColor = obsColor;
+        this.cyclic = cyclic;
+        this.dist = new long[width * height];
+        this.parent = new int[width * height];
+    }
+
+    /**
+     * Cost of entering (x,y), or -1 if the cell cannot be entered.
+     */
+    int cost(int x, int y) {
+        int v = map[x][y];
+        if (v == obsColor) return -1;
+        if (costs == null) return v < 0 ? -1 : v;
+        if (v < 0 || v >= costs.length) return -1;
+        return costs[v] < 0 ? -1 : costs[v];
+    }
+
+    /**
+     * Run Dijkstra from src. Stops early once goal has been settled (pass -1 to expand everything).
+     * After the call dist[c] holds the cost from src to c (or -1 if unreached) and parent[c] the previous cell
+     * (-1 for src itself).
+     * @param src encoded start cell
+     * @param goal encoded goal cell or -1
+     * @return true if goal was reached (always true when goal is -1)
+     */
+    boolean run(int src, int goal) {
+        Arrays.fill(dist, -1);
+        Arrays.fill(parent, -1);
+        int maxCost = maxCost();
+        Queue q = maxCost <= DIAL_LIMIT ? new BucketQueue(maxCost) : new HeapQueue();
+        dist[src] = 0;
+        q.push(0, src);
+        while (!q.isEmpty()) {
+            int cur = q.pop();
+            long d = q.key();
+            if (d != dist[cur]) continue;
+            if (cur == goal) return true;
+            int cx = cur / height, cy = cur % height;
+            for (int k = 0; k < 4; k++) {
+                int nx = cx, ny = cy;
+                if (k == 0) nx++;
+                else if (k == 1) nx--;
+                else if (k == 2) ny++;
+                else ny--;
+                if (cyclic) {
+                    if (nx < 0) nx = width - 1;
+                    if (nx >= width) nx = 0;
+                    if (ny < 0) ny = height - 1;
+                    if (ny >= height) ny = 0;
+                }
+                if (nx < 0 || nx >= width || ny < 0 || ny >= height) continue;
+                int c = cost(nx, ny);
+                if (c < 0) continue;
+                int next = nx * height + ny;
+                long nd = d + c;
+                if (dist[next] != -1 && dist[next] <= nd) continue;
+                dist[next] = nd;
+                parent[next] = cur;
+                q.push(nd, next);
+            }
+        }
+        return goal == -1;
+    }
+
+    /**
+     * The largest finite step cost that can occur in this search (used to size the bucket queue).
+     */
+    private int maxCost() {
+        int max = 0;
+        if (costs != null) {
+            for (int c : costs) max = Math.max(max, c);
+            return max;
+        }
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                if (map[x][y] != obsColor) max = Math.max(max, map[x][y]);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Rebuild the path from src to goal (inclusive) after a successful run.
+     */
+    Pixel2D[] path(int goal) {
+        int len = 0;
+        for (int c = goal; c != -1; c = parent[c]) len++;
+        Pixel2D[] ans = new Pixel2D[len];
+        for (int c = goal, i = len - 1; c != -1; c = parent[c], i--) {
+            ans[i] = new Index2D(c / height, c % height);
+        }
+        return ans;
+    }
+
+    /** Minimal monotone priority queue of encoded cells keyed by distance. */
+    private interface Queue {
+        void push(long key, int cell);
+        /** removes the entry with the smallest key and returns its cell; key() then returns that key */
+        int pop();
+        long key();
+        boolean isEmpty();
+    }
+
+    /**
+     * Dial's bucket queue: maxCost + 1 circular buckets, valid because every key in the queue
+     * lies within [current, current + maxCost].
+     */
+    private static final class BucketQueue implements Queue {
+        private final int[][] buckets;
+        private final int[] sizes;
+        private int size;
+        private long cur;
+
+        BucketQueue(int maxCost) {
+            buckets = new int[maxCost + 1][];
+            sizes = new int[maxCost + 1];
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new int[4];
+        }
+
+        @Override
+        public void push(long key, int cell) {
+            int b = (int) (key % buckets.length);
+            if (sizes[b] == buckets[b].length) buckets[b] = Arrays.copyOf(buckets[b], sizes[b] * 2);
+            buckets[b][sizes[b]++] = cell;
+            size++;
+        }
+
+        @Override
+        public int pop() {
+            while (sizes[(int) (cur % buckets.length)] == 0) cur++;
+            int b = (int) (cur % buckets.length);
+            size--;
+            return buckets[b][--sizes[b]];
+        }
+
+        @Override
+        public long key() {
+            return cur;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+    }
+
+    /** Binary min-heap over parallel key / cell arrays. */
+    private static final class HeapQueue implements Queue {
+        private long[] keys = new long[64];
+        private int[] cells = new int[64];
+        private int size;
+        private long key;
+
+        @Override
+        public void push(long key, int cell) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                cells = Arrays.copyOf(cells, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int p = (i - 1) >>> 1;
+                if (keys[p] <= key) break;
+                keys[i] = keys[p];
+                cells[i] = cells[p];
+                i = p;
+            }
+            keys[i] = key;
+            cells[i] = cell;
+        }
+
+        @Override
+        public int pop() {
+            int top = cells[0];
+            key = keys[0];
+            long lastKey = keys[--size];
+            int lastCell = cells[size];
+            int i = 0;
+            while (true) {
+                int l = 2 * i + 1;
+                if (l >= size) break;
+                int r = l + 1;
+                int m = (r < size && keys[r] < keys[l]) ? r : l;
+                if (keys[m] >= lastKey) break;
+                keys[i] = keys[m];
+                cells[i] = cells[m];
+                i = m;
+            }
+            keys[i] = lastKey;
+            cells[i] = lastCell;
+            return top;
+        }
+
+        @Override
+        public long key() {
+            return key;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}